@@ -0,0 +1,259 @@
+package competitive.programming.containers;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of int ids, polled from the highest key to the lowest.
+ *
+ * It is a 4-ary heap stored in primitive arrays: no boxing, no comparator, and the keys are stored next to the ids in heap order
+ * so that sifting does not read anything else. A 4-ary heap is less deep than a binary one, and the 4 children of a node are contiguous in memory.
+ * Each id knows its position in the heap, so the key of an id already in the heap can be changed or the id removed in O(log n).
+ *
+ * Hint: the ids should be small and dense (indexes in your own arrays), the position table is as big as the highest id.
+ * Hint: to fill a heap with many ids at once, append them and call heapify once, it costs O(n) instead of O(n log n).
+ *
+ * @author Manwe
+ */
+public class IndexedHeap {
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+
+    private int size;
+    private int[] ids;
+    private double[] keys;
+    // heap position of each id, ABSENT if it is not in the heap
+    private int[] positions;
+
+    /**
+     * @param capacity
+     *            the number of ids the heap is allocated for. Ids from 0 to capacity-1 can be added without any allocation
+     */
+    public IndexedHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Heap capacity must be strictly positive");
+        }
+        ids = new int[capacity];
+        keys = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return id < positions.length && positions[id] != ABSENT;
+    }
+
+    /**
+     * @return the key of an id in the heap
+     */
+    public double key(int id) {
+        return keys[position(id)];
+    }
+
+    /**
+     * @return the id at the given index of the heap array, for iteration purpose. The ids are not sorted.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of heap of size " + size);
+        }
+        return ids[index];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[ids[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /**
+     * Add an id that is not in the heap yet
+     */
+    public void add(int id, double key) {
+        append(id, key);
+        siftUp(size - 1);
+    }
+
+    /**
+     * Change the key of an id in the heap, it can be increased or decreased
+     */
+    public void update(int id, double key) {
+        final int position = position(id);
+        final double previousKey = keys[position];
+        keys[position] = key;
+        if (key > previousKey) {
+            siftUp(position);
+        } else if (key < previousKey) {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Add the id, or change its key if it is already in the heap
+     */
+    public void addOrUpdate(int id, double key) {
+        if (contains(id)) {
+            update(id, key);
+        } else {
+            add(id, key);
+        }
+    }
+
+    /**
+     * @return the id with the highest key, without removing it
+     */
+    public int peek() {
+        checkNotEmpty();
+        return ids[0];
+    }
+
+    /**
+     * @return the highest key
+     */
+    public double peekKey() {
+        checkNotEmpty();
+        return keys[0];
+    }
+
+    /**
+     * Remove the id with the highest key
+     *
+     * @return the removed id
+     */
+    public int poll() {
+        checkNotEmpty();
+        final int id = ids[0];
+        removeAt(0);
+        return id;
+    }
+
+    /**
+     * Remove an id from the heap
+     */
+    public void remove(int id) {
+        removeAt(position(id));
+    }
+
+    /**
+     * Add an id that is not in the heap yet, without restoring the heap order. heapify must be called before the next access to the heap.
+     */
+    public void append(int id, double key) {
+        if (contains(id)) {
+            throw new IllegalArgumentException("Id " + id + " is already in the heap");
+        }
+        ensureCapacity(size + 1, id + 1);
+        ids[size] = id;
+        keys[size] = key;
+        positions[id] = size;
+        size++;
+    }
+
+    /**
+     * Restore the heap order after ids have been appended, in O(n)
+     */
+    public void heapify() {
+        // The last parent is at (size - 2) / ARITY, none when there are less than 2 ids: the division rounds -1 / ARITY to 0
+        for (int position = size < 2 ? -1 : (size - 2) / ARITY; position >= 0; position--) {
+            siftDown(position);
+        }
+    }
+
+    private void removeAt(int position) {
+        positions[ids[position]] = ABSENT;
+        size--;
+        if (position == size) {
+            return;
+        }
+        // The last leaf fills the hole, then goes up or down to its place
+        move(size, position);
+        if (position > 0 && keys[(position - 1) / ARITY] < keys[position]) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    private void siftUp(int position) {
+        final int id = ids[position];
+        final double key = keys[position];
+        while (position > 0) {
+            final int parent = (position - 1) / ARITY;
+            if (keys[parent] >= key) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        place(id, key, position);
+    }
+
+    private void siftDown(int position) {
+        final int id = ids[position];
+        final double key = keys[position];
+        while (true) {
+            final int firstChild = position * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            final int lastChild = Math.min(firstChild + ARITY, size);
+            int bestChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] > keys[bestChild]) {
+                    bestChild = child;
+                }
+            }
+            if (keys[bestChild] <= key) {
+                break;
+            }
+            move(bestChild, position);
+            position = bestChild;
+        }
+        place(id, key, position);
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        keys[to] = keys[from];
+        positions[ids[to]] = to;
+    }
+
+    private void place(int id, double key, int position) {
+        ids[position] = id;
+        keys[position] = key;
+        positions[id] = position;
+    }
+
+    private int position(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Id " + id + " is not in the heap");
+        }
+        return positions[id];
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("The heap is empty");
+        }
+    }
+
+    private void ensureCapacity(int heapSize, int idsCount) {
+        if (heapSize > ids.length) {
+            final int capacity = Math.max(heapSize, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        if (idsCount > positions.length) {
+            final int previousLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(idsCount, previousLength * 2));
+            Arrays.fill(positions, previousLength, positions.length, ABSENT);
+        }
+    }
+}
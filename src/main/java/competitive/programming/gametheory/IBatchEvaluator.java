@@ -0,0 +1,32 @@
+package competitive.programming.gametheory;
+
+import java.util.List;
+
+/**
+ * @author Manwe
+ *
+ *         Interface evaluating several game states in one call: the sub nodes of a node of the game tree, all at the same depth.
+ *         Search algorithms use it instead of evaluating the game states one by one when it is provided.
+ *
+ *         Hint: evaluating the brothers together allows to do the setup shared by the game states only once (what they inherit from their
+ *         father), and to write the inner loops over all the game states so that they are vectorized.
+ *         The evaluation must be the same as IGame.evaluate would return for each game state.
+ *
+ * @param <G>
+ *            The game class representing the game state
+ */
+@FunctionalInterface
+public interface IBatchEvaluator<G extends IGame> {
+    /**
+     * Evaluate the game states for each player and score them.
+     *
+     * @param games
+     *            the game states to evaluate
+     * @param depth
+     *            the depth of the game states in the game tree, as in IGame.evaluate
+     * @param evaluations
+     *            the arrays to fill, allocated by the search with one value per player: evaluations[i] is the evaluation of games.get(i).
+     *            There can be more arrays than game states. They are reused by the search, do not keep them.
+     */
+    void evaluate(List<G> games, int depth, double[][] evaluations);
+}
@@ -0,0 +1,18 @@
+package competitive.programming.gametheory;
+
+/**
+ * @author Manwe
+ *
+ *         Interface representing a game state that can be copied.
+ *         Search algorithms exploring the game tree on several threads need it so that each thread applies and cancels moves on its own game state.
+ *
+ * @param <G>
+ *            The game class representing the game state
+ */
+public interface ICopyableGame<G extends IGame> extends IGame {
+
+    /**
+     * @return a deep copy of the game state. Executing or canceling a move on the copy must not impact the original game state
+     */
+    G copy();
+}
@@ -23,4 +23,21 @@ public interface IGame {
      * Convention: player id represent the index of the player in the evaluated array
      */
     double[] evaluate(int depth);
+
+    /**
+     * Evaluate the game for each player into an array provided by the search, so that evaluating does not create any garbage.
+     * The search algorithms call this method for each game state they evaluate, and evaluate(depth) only at the beginning of a search
+     * to know the number of players.
+     * 
+     * Hint: by default the array returned by evaluate(depth) is copied. Override this method to fill the array directly when you evaluate
+     *       millions of game states, and implement evaluate(depth) by calling it with a new array.
+     * 
+     * @param depth the current depth when exploring the game tree, as in evaluate(depth)
+     * @param evaluation the array to fill with the evaluation of each player, of the length returned by evaluate(depth).
+     * It is reused by the search, do not keep it.
+     */
+    default void evaluate(int depth, double[] evaluation) {
+        final double[] scores = evaluate(depth);
+        System.arraycopy(scores, 0, evaluation, 0, scores.length);
+    }
 }
@@ -0,0 +1,23 @@
+package competitive.programming.gametheory;
+
+/**
+ * @author Manwe
+ *
+ *         Interface representing a game state that can provide a hash key identifying it.
+ *         Search algorithms use this key to recognize a game state they already explored through another sequence of moves (transposition).
+ *
+ *         Hint: the usual way to compute such a key is the Zobrist hashing: generate once a random long for each (piece, position) couple
+ *         and for the player to play, and xor together the ones of the current state. When a move is executed or canceled, you only have to
+ *         xor the values of what changed, so the key is updated at almost no cost.
+ * @see <a href="https://en.wikipedia.org/wiki/Zobrist_hashing">Zobrist hashing</a>
+ */
+public interface IHashableGame extends IGame {
+
+    /**
+     * Two game states that are equal MUST return the same hash. Two different game states should return different hashes as often as possible.
+     * The player currently playing is part of the game state and must be taken into account in the hash.
+     *
+     * @return the hash key of the current game state
+     */
+    long hash();
+}
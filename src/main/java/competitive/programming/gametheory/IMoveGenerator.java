@@ -27,4 +27,20 @@ public interface IMoveGenerator<M extends IMove<G>, G extends IGame> {
      *         The list of all the moves you want to be taken into account during the game tree exploration
      */
     List<M> generateMoves(G game);
+
+    /**
+     * Generate the moves like generateMoves(game), but into a buffer owned by the search algorithm. The search keeps one buffer per depth
+     * and reorders the moves in place, so a generator overriding this method makes the move generation allocation free.
+     * The default implementation adds the list returned by generateMoves(game).
+     *
+     * Hint: add the moves with their index in your move ordering tables as code, the move ordering then does not need to compute it.
+     *
+     * @param game
+     *            The game state from which you must generate the moves
+     * @param moves
+     *            The empty buffer to fill with the moves
+     */
+    default void generateMoves(G game, MoveBuffer<M> moves) {
+        moves.addAll(generateMoves(game));
+    }
 }
@@ -0,0 +1,44 @@
+package competitive.programming.gametheory;
+
+import java.util.List;
+
+/**
+ * @author Manwe
+ *
+ *         Interface producing only the "noisy" moves in function of the game state: the moves that change a lot the evaluation,
+ *         such as captures or collisions. Search algorithms explore them beyond the maximum depth, until the game state is quiet,
+ *         so that the evaluation is not done in the middle of an exchange (horizon effect).
+ *
+ *         Hint: keep the noisy moves as few as possible. They are explored at each leaf of the game tree, so generating too many of them
+ *         costs more than searching one more depth.
+ *
+ * @param <M>
+ *            The move class representing the action a player can do
+ * @param <G>
+ *            The game class representing the game state
+ */
+public interface INoisyMoveGenerator<M extends IMove<G>, G extends IGame> {
+    /**
+     * Generate the noisy moves the current player can do from a given game state.
+     * If no moves are generated, the game state is considered as quiet and is evaluated.
+     *
+     * @param game
+     *            The game state from which you must generate the moves
+     * @return
+     *         The list of the noisy moves
+     */
+    List<M> generateNoisyMoves(G game);
+
+    /**
+     * Generate the noisy moves like generateNoisyMoves(game), but into a buffer owned by the search algorithm.
+     * The default implementation adds the list returned by generateNoisyMoves(game).
+     *
+     * @param game
+     *            The game state from which you must generate the moves
+     * @param moves
+     *            The empty buffer to fill with the noisy moves
+     */
+    default void generateNoisyMoves(G game, MoveBuffer<M> moves) {
+        moves.addAll(generateNoisyMoves(game));
+    }
+}
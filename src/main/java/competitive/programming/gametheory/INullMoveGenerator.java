@@ -0,0 +1,28 @@
+package competitive.programming.gametheory;
+
+/**
+ * @author Manwe
+ *
+ *         Interface producing the "null" move of a game state: the move where the current player passes his turn and does nothing else.
+ *         Search algorithms use it to quickly prove that a game state is so good for the current player that even without playing,
+ *         the opponent can not come back (null move pruning).
+ *
+ *         Hint: do not generate the null move in game states where passing would be an advantage for the player (zugzwang), for example
+ *         in end games with few pieces. In those game states the null move would prune good moves.
+ *
+ * @param <M>
+ *            The move class representing the action a player can do
+ * @param <G>
+ *            The game class representing the game state
+ */
+public interface INullMoveGenerator<M extends ICancellableMove<G>, G extends IGame> {
+    /**
+     * Generate the move passing the turn of the current player. Executing it must only change the current player.
+     *
+     * @param game
+     *            The game state from which you must generate the null move
+     * @return
+     *         The null move, or null if passing the turn must not be tried in this game state
+     */
+    M generateNullMove(G game);
+}
@@ -0,0 +1,193 @@
+package competitive.programming.gametheory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * @author Manwe
+ *
+ *         Reusable list of moves filled by a move generator. The search algorithms own one buffer per depth of the game tree and clear it
+ *         before each generation, so generating and reordering the moves of a game state does not allocate anything once the buffers have
+ *         grown to the highest number of moves.
+ *
+ *         Each move can come with an int code (optional), typically the index of the move in the move ordering tables, or a compact encoding
+ *         computed by the generator. The codes follow their moves when the buffer is reordered with swap, moveToFront, sortByScores or
+ *         set(index, move, code). Moves added without code have the code NO_CODE.
+ *
+ *         Hint: the buffer is a List, so it can be given to the code expecting a list of moves. Do not keep a reference to it: its content
+ *         changes at the next generation of the same depth.
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ */
+public class MoveBuffer<M> extends AbstractList<M> implements RandomAccess {
+    public static final int NO_CODE = -1;
+
+    private Object[] moves;
+    private int[] codes;
+    private int size;
+
+    public MoveBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity
+     *            the number of moves the buffer is allocated for. It grows when more moves are added
+     */
+    public MoveBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Move buffer capacity must be strictly positive");
+        }
+        moves = new Object[capacity];
+        codes = new int[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public M get(int index) {
+        checkIndex(index);
+        return (M) moves[index];
+    }
+
+    /**
+     * @return the code the move at the given index was added with, NO_CODE if none
+     */
+    public int code(int index) {
+        checkIndex(index);
+        return codes[index];
+    }
+
+    @Override
+    public boolean add(M move) {
+        add(move, NO_CODE);
+        return true;
+    }
+
+    /**
+     * Add a move with its code
+     */
+    public void add(M move, int code) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        moves[size] = move;
+        codes[size] = code;
+        size++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends M> moves) {
+        for (final M move : moves) {
+            add(move, NO_CODE);
+        }
+        return !moves.isEmpty();
+    }
+
+    /**
+     * Replace the move at the given index. Its code is kept: use set(index, move, code) to reorder a buffer with codes.
+     */
+    @Override
+    public M set(int index, M move) {
+        final M previous = get(index);
+        moves[index] = move;
+        return previous;
+    }
+
+    /**
+     * Replace the move and the code at the given index
+     */
+    public void set(int index, M move, int code) {
+        checkIndex(index);
+        moves[index] = move;
+        codes[index] = code;
+    }
+
+    /**
+     * Remove all the moves, the buffer keeps its capacity
+     */
+    @Override
+    public void clear() {
+        // Release the moves so that they can be garbage collected
+        Arrays.fill(moves, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public int indexOf(Object move) {
+        for (int i = 0; i < size; i++) {
+            if (move == null ? moves[i] == null : move.equals(moves[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Exchange two moves and their codes
+     */
+    public void swap(int first, int second) {
+        checkIndex(first);
+        checkIndex(second);
+        final Object move = moves[first];
+        moves[first] = moves[second];
+        moves[second] = move;
+        final int code = codes[first];
+        codes[first] = codes[second];
+        codes[second] = code;
+    }
+
+    /**
+     * Move the move at the given index in first position, the moves before it are shifted by one. The order of the other moves is kept.
+     */
+    public void moveToFront(int index) {
+        checkIndex(index);
+        final Object move = moves[index];
+        final int code = codes[index];
+        System.arraycopy(moves, 0, moves, 1, index);
+        System.arraycopy(codes, 0, codes, 1, index);
+        moves[0] = move;
+        codes[0] = code;
+    }
+
+    /**
+     * Sort the moves from the given index by decreasing score, the order of the moves with the same score is kept.
+     *
+     * @param from
+     *            the index of the first move to sort, the moves before are not moved
+     * @param scores
+     *            the score of each move, indexed as the moves. It is sorted with them
+     */
+    public void sortByScores(int from, int[] scores) {
+        // Insertion sort: few moves, usually already partially sorted by the generator
+        for (int i = from + 1; i < size; i++) {
+            final int score = scores[i];
+            final Object move = moves[i];
+            final int code = codes[i];
+            int j = i - 1;
+            while (j >= from && scores[j] < score) {
+                scores[j + 1] = scores[j];
+                moves[j + 1] = moves[j];
+                codes[j + 1] = codes[j];
+                j--;
+            }
+            scores[j + 1] = score;
+            moves[j + 1] = move;
+            codes[j + 1] = code;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of move buffer of size " + size);
+        }
+    }
+}
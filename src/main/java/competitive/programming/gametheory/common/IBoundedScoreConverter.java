@@ -0,0 +1,24 @@
+package competitive.programming.gametheory.common;
+
+/**
+ * @author Manwe
+ *
+ * Score converter declaring the bounds of the scores it converts, for all the evaluations of the game:
+ * the score of each player is at least minScore, and the scores of all the players sum to maxScoreSum at most.
+ * With those bounds the Max-N tree knows that a move good for a player is bad enough for the others, and prunes the game states
+ * that can not change the move chosen.
+ *
+ * Hint: the tighter the bounds, the more the search prunes. A converter of the own score in a constant sum game is ideal.
+ * A converter such as the own score minus the others scores is rarely bounded this way.
+ */
+public interface IBoundedScoreConverter extends IScoreConverter {
+    /**
+     * @return the lowest score a player can have
+     */
+    double minScore();
+
+    /**
+     * @return the highest sum of the scores of all the players
+     */
+    double maxScoreSum();
+}
@@ -0,0 +1,62 @@
+package competitive.programming.gametheory.common;
+
+/**
+ * @author Manwe
+ *
+ *         The usual score converters. Each one is a small final class, so that the call of a search algorithm using only one of them is
+ *         monomorphic and inlined by the JIT.
+ *
+ *         Hint: in a constant sum game, the own score is the only one of them allowing the Max-N tree to prune (see IBoundedScoreConverter):
+ *         wrap it with the bounds of your game.
+ */
+public final class ScoreConverters {
+    /**
+     * The score of the player: each player maximizes its own score, whatever the others get
+     */
+    public static final IScoreConverter OWN_SCORE = new OwnScore();
+    /**
+     * The score of the player minus the best score of the other players: each player tries to lead
+     */
+    public static final IScoreConverter OWN_MINUS_BEST_OTHER = new OwnMinusBestOther();
+    /**
+     * The score of the player minus the sum of the scores of the other players: each player plays against all the others
+     */
+    public static final IScoreConverter OWN_MINUS_OTHERS = new OwnMinusOthers();
+
+    private ScoreConverters() {
+    }
+
+    private static final class OwnScore implements IScoreConverter {
+        @Override
+        public double convert(double[] rawScores, int player) {
+            return rawScores[player];
+        }
+    }
+
+    private static final class OwnMinusBestOther implements IScoreConverter {
+        @Override
+        public double convert(double[] rawScores, int player) {
+            double bestOther = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < rawScores.length; i++) {
+                if (i != player && rawScores[i] > bestOther) {
+                    bestOther = rawScores[i];
+                }
+            }
+            // Alone in the game, there is nobody to lead
+            return rawScores.length == 1 ? rawScores[player] : rawScores[player] - bestOther;
+        }
+    }
+
+    private static final class OwnMinusOthers implements IScoreConverter {
+        @Override
+        public double convert(double[] rawScores, int player) {
+            double others = 0;
+            for (int i = 0; i < rawScores.length; i++) {
+                if (i != player) {
+                    others += rawScores[i];
+                }
+            }
+            return rawScores[player] - others;
+        }
+    }
+}
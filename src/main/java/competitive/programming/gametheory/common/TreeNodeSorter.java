@@ -1,23 +1,89 @@
 package competitive.programming.gametheory.common;
 
-import java.util.Collections;
 import java.util.List;
 
+/**
+ * @author Manwe
+ *
+ *         Select the best tree node for a player, according to the score converter.
+ *
+ *         Each node is converted once per selection, and the best one is the first node with the highest score: the list is not sorted and
+ *         nothing is allocated.
+ *
+ *         Hint: sorting the nodes by decreasing score is useful to trace the alternatives of the best move, see setSorting. It is slower.
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ * @param <G>
+ *            The class that model the Game state
+ */
 public class TreeNodeSorter<M, G> {
     public final IScoreConverter converter;
 
+    private boolean sorting;
+    private double[] scores = new double[0];
+
     public TreeNodeSorter(IScoreConverter converter) {
         this.converter = converter;
     }
 
+    /**
+     * @param sorting
+     *            true to sort the nodes given to best by decreasing score (equal nodes keep their order), for tracing. False by default
+     */
+    public void setSorting(boolean sorting) {
+        this.sorting = sorting;
+    }
+
+    /**
+     * @return the first node with the highest score for the player. When sorting, the nodes are sorted by decreasing score
+     */
     public TreeNode<M, G> best(List<? extends TreeNode<M, G>> moves, int playerId) {
-        Collections.sort(moves, (n1, n2) -> compare(n1.getEvaluation(), 1.0, playerId, n2.getEvaluation(), 1.0, playerId, converter));
-        return moves.get(0);
+        if (sorting) {
+            sort(moves, playerId);
+            return moves.get(0);
+        }
+        TreeNode<M, G> best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < moves.size(); i++) {
+            final TreeNode<M, G> node = moves.get(i);
+            final double score = converter.convert(node.getEvaluation(), playerId);
+            if (best == null || score > bestScore) {
+                best = node;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            throw new IndexOutOfBoundsException("No tree node to select the best from");
+        }
+        return best;
+    }
+
+    private <T extends TreeNode<M, G>> void sort(List<T> moves, int playerId) {
+        final int size = moves.size();
+        if (scores.length < size) {
+            scores = new double[size];
+        }
+        for (int i = 0; i < size; i++) {
+            scores[i] = converter.convert(moves.get(i).getEvaluation(), playerId);
+        }
+        // Stable insertion sort on the cached scores
+        for (int i = 1; i < size; i++) {
+            final double score = scores[i];
+            final T node = moves.get(i);
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                scores[j + 1] = scores[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            scores[j + 1] = score;
+            moves.set(j + 1, node);
+        }
     }
 
-    private static int compare(double[] scores1, double evaluation1Factor, int player1Id, double[] scores2, double evaluation2Factor, int player2Id,
-            IScoreConverter converter) {
-        final double diff = converter.convert(scores1, player1Id) * evaluation1Factor - converter.convert(scores2, player2Id) * evaluation2Factor;
+    private static int compare(double score1, double score2) {
+        final double diff = score1 - score2;
         if (diff < 0) {
             return 1;
         }
@@ -28,10 +94,10 @@ public class TreeNodeSorter<M, G> {
     }
 
     public int compare(double[] evaluation1, double evaluation1Factor, int player1Id, double[] evaluation2, double evaluation2Factor, int player2Id) {
-        return compare(evaluation1, evaluation1Factor, player1Id, evaluation2, evaluation2Factor, player2Id, converter);
+        return compare(converter.convert(evaluation1, player1Id) * evaluation1Factor, converter.convert(evaluation2, player2Id) * evaluation2Factor);
     }
 
     public boolean isBetter(double[] evaluation1, double evaluation1Factor, int player1Id, double[] evaluation2, double evaluation2Factor, int player2Id) {
-        return compare(evaluation1, evaluation1Factor, player1Id, evaluation2, evaluation2Factor, player2Id, converter) < 0;
+        return compare(evaluation1, evaluation1Factor, player1Id, evaluation2, evaluation2Factor, player2Id) < 0;
     }
-}
\ No newline at end of file
+}
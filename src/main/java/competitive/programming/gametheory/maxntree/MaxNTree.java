@@ -1,15 +1,25 @@
 package competitive.programming.gametheory.maxntree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import competitive.programming.common.Constants;
+import competitive.programming.gametheory.IBatchEvaluator;
 import competitive.programming.gametheory.ICancellableMove;
+import competitive.programming.gametheory.ICopyableGame;
 import competitive.programming.gametheory.IGame;
 import competitive.programming.gametheory.IMoveGenerator;
+import competitive.programming.gametheory.INullMoveGenerator;
+import competitive.programming.gametheory.MoveBuffer;
+import competitive.programming.gametheory.common.IBoundedScoreConverter;
 import competitive.programming.gametheory.common.IScoreConverter;
 import competitive.programming.gametheory.common.TreeNode;
-import competitive.programming.gametheory.common.TreeNodeSorter;
 import competitive.programming.timemanagement.TimeoutException;
 import competitive.programming.timemanagement.Timer;
 
@@ -27,6 +37,11 @@ import competitive.programming.timemanagement.Timer;
  *
  *   Hint: If you are in pure zero sum 2 player games you should have a
  *         look to Minimax implementation
+ *   Hint: Max-N only prunes when the score converter declares bounds on the
+ *         scores (see IBoundedScoreConverter). With more than 2 players, the
+ *         Paranoid and Best-Reply modes search deeper in the same time (see setMode)
+ *   Hint: With copyable game states, the root moves can be searched on
+ *         several threads (see setThreads)
  *   Hint: You might want to use MaxN tree
  *         only considering your current player and exploring the possible moves
  *         without taking into account the others
@@ -39,16 +54,68 @@ import competitive.programming.timemanagement.Timer;
 
 public class MaxNTree<M extends ICancellableMove<G>, G extends IGame> {
 
-    private IMoveGenerator<M, G> generator;
+    /**
+     * How the moves of the other players are chosen
+     */
+    public enum Mode {
+        /**
+         * Each player plays the move maximizing its own score. No pruning is possible.
+         */
+        MAX_N,
+        /**
+         * The other players play the moves minimizing the score of the player searching the best move, as if they were all against him.
+         * The game tree is then searched with alpha beta pruning.
+         */
+        PARANOID,
+        /**
+         * Between two moves of the player searching the best move, only the strongest reply of one of the other players is searched, the
+         * others pass their turn. The reply minimizes the score of the player searching the best move, with alpha beta pruning.
+         * The moves of the player are searched deeper than in the Paranoid mode, at the cost of unrealistic game states.
+         */
+        BEST_REPLY
+    }
 
-    private final TreeNodeSorter<M, G> sorter;
+    private IMoveGenerator<M, G> generator;
 
-    private int evaluations;
+    private final IScoreConverter converter;
 
     private final Timer timer;
 
     private TreeNode<M, G> best;
 
+    private IBatchEvaluator<G> batchEvaluator;
+    private int players;
+
+    // Max-N pruning, when the converter declares bounds
+    private final IBoundedScoreConverter bounded;
+    private double minScore;
+    private double maxScoreSum;
+
+    // Iterative deepening: the root moves ranked by the last depth fully searched, and the best line of this depth (Max-N)
+    private Object[] rankedRootMoves = new Object[0];
+    private double[] rankedRootValues = new double[0];
+    private int rankedRootMovesCount;
+    private Object[] rootMoves = new Object[0];
+    private double[] rootValues = new double[0];
+    private int rootMovesCount;
+    private int[] rootScores = new int[0];
+    private Object[] principalVariation = new Object[0];
+    private int principalVariationLength;
+    private long[] depthDurations = new long[0];
+
+    private Mode mode = Mode.MAX_N;
+    private INullMoveGenerator<M, G> nullMoveGenerator;
+    private int rootPlayer;
+
+    // The searcher of the calling thread, and the ones of the root moves searched in parallel
+    private final Searcher searcher = new Searcher(0);
+    private final List<Searcher> parallelSearchers = new ArrayList<>();
+    private final Queue<Searcher> idleSearchers = new ConcurrentLinkedQueue<>();
+    private int threads = 1;
+    private ForkJoinPool pool;
+    private final MoveBuffer<M> parallelRootMoves = new MoveBuffer<>();
+    private int depthMax;
+
     /**
      * Creates a new Max-N tree.
      *
@@ -60,13 +127,93 @@ public class MaxNTree<M extends ICancellableMove<G>, G extends IGame> {
      *            are taking into consideration other players scores.
      */
     public MaxNTree(Timer timer, IScoreConverter converter) {
-        this.sorter = new TreeNodeSorter<>(converter);
+        this.converter = converter;
+        this.bounded = converter instanceof IBoundedScoreConverter ? (IBoundedScoreConverter) converter : null;
+        if (bounded != null) {
+            minScore = bounded.minScore();
+            maxScoreSum = bounded.maxScoreSum();
+        }
         this.timer = timer;
     }
 
+    /**
+     * Evaluate the moves of the last depth all together instead of one by one. Without batch evaluator, each game state is evaluated by IGame.evaluate.
+     *
+     * Hint: the evaluated game states must all exist at the same time. If your moves modify the game state instead of returning a new one,
+     *       it must implement ICopyableGame so that each of them is copied before the move is canceled.
+     *
+     * @param batchEvaluator
+     *            the evaluator of the game states of the last depth, null to evaluate them one by one
+     */
+    public void setBatchEvaluator(IBatchEvaluator<G> batchEvaluator) {
+        this.batchEvaluator = batchEvaluator;
+    }
+
+    /**
+     * Choose how the moves of the other players are searched. The default mode is MAX_N.
+     *
+     * @param mode
+     *            MAX_N or PARANOID. The BEST_REPLY mode also needs a null move generator
+     */
+    public void setMode(Mode mode) {
+        setMode(mode, null);
+    }
+
+    /**
+     * Choose how the moves of the other players are searched. The default mode is MAX_N.
+     *
+     * Hint: in PARANOID and BEST_REPLY modes, the score converter gives the score of the player searching the best move, the other players
+     *       minimize it. The batch evaluator is not used since the alpha beta needs the evaluations one by one.
+     *
+     * @param mode
+     *            the search mode
+     * @param nullMoveGenerator
+     *            generates the move passing the turn of the other players that do not reply. Required in BEST_REPLY mode, ignored otherwise
+     */
+    public void setMode(Mode mode, INullMoveGenerator<M, G> nullMoveGenerator) {
+        if (mode == Mode.BEST_REPLY && nullMoveGenerator == null) {
+            throw new IllegalArgumentException("Best-Reply search requires a null move generator to pass the turn of the players that do not reply");
+        }
+        this.mode = mode;
+        this.nullMoveGenerator = nullMoveGenerator;
+    }
+
+    /**
+     * Search the root moves in parallel, each one on its own copy of the game state. The best move has the same value as with one thread,
+     * but the root moves do not prune each other.
+     *
+     * Hint: the game state must implement ICopyableGame. The moves generated for the root game state are executed on its copies.
+     * Hint: the move generator, the moves, the evaluation of your game states and the score converter are called by several threads at the same time.
+     *       They must not share any mutable state.
+     * Hint: call shutdown once the MaxNTree is not used anymore, to stop its threads.
+     *
+     * @param threads
+     *            the number of threads searching the root moves. With 1 thread, the thread calling best searches alone
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required to search");
+        }
+        this.threads = threads;
+        shutdown();
+    }
+
+    /**
+     * Stop the threads searching the root moves in parallel. The next search on several threads starts new ones.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
     /**
      * Explore the game tree incrementally from the depthStart to depthMax.
      * At each depth, update the new best move at this depth. If a time out occurs during the exploration, return the best result of previous depth
+     * When the search prunes (alpha beta modes, or Max-N with a bounded score converter), each depth searches first the root moves that were
+     * the best at the previous depth, and the principal variation of the previous depth. Equal moves can then be chosen in another order.
+     * A depth is not started if the time it should take, predicted from the previous depths, is longer than the time remaining in the timer.
      * 
      * @param game
      *            The current state of the game
@@ -81,10 +228,37 @@ public class MaxNTree<M extends ICancellableMove<G>, G extends IGame> {
      *         the best move for them
      */
     public M best(G game, IMoveGenerator<M, G> generator, int depthStart, int depthMax) {
+        if (threads > 1 && !(game instanceof ICopyableGame)) {
+            throw new IllegalArgumentException("Searching on several threads requires the game state to implement ICopyableGame");
+        }
         this.generator = generator;
+        this.depthMax = depthMax;
+        players = game.evaluate(0).length;
+        rootPlayer = game.currentPlayer();
+        searcher.allocate();
+        searcher.evaluations = 0;
+        for (final Searcher parallelSearcher : parallelSearchers) {
+            parallelSearcher.evaluations = 0;
+        }
+        if (principalVariation.length < depthMax + 1) {
+            principalVariation = new Object[depthMax + 1];
+        }
+        if (depthDurations.length < depthMax + 1) {
+            depthDurations = new long[depthMax + 1];
+        }
+        Arrays.fill(depthDurations, 0);
+        rankedRootMovesCount = 0;
+        principalVariationLength = 0;
         try {
         	for (int depth=depthStart; depth<depthMax; depth++){
-                best = bestInternal(depth, game);
+                if (!fitsInRemainingTime(depth, depthStart)) {
+                    break;
+                }
+                final long start = System.nanoTime();
+                rootMovesCount = 0;
+                best = threads > 1 ? bestInParallel(depth, game) : searcher.best(depth, game);
+                depthDurations[depth] = System.nanoTime() - start;
+                rankRootMoves();
             }
 		} catch (TimeoutException e) {
 			//Expected, we just reach a timeout.
@@ -103,46 +277,572 @@ public class MaxNTree<M extends ICancellableMove<G>, G extends IGame> {
         return best.getGame();
     }
 
-    private TreeNode<M, G> bestInternal(int depth, G board) throws TimeoutException {
-        final List<M> generatedMoves = generator.generateMoves(board);
-        if (!generatedMoves.isEmpty()) {
-            final List<TreeNode<M, G>> evaluatedMoves = evaluatesMoves(generatedMoves, board, depth);
-            final TreeNode<M, G> bestMove = sorter.best(evaluatedMoves, board.currentPlayer());
-            if (Constants.TRACES) {
-                System.err.println("Evaluated moves at depth " + depth + ": " + evaluatedMoves);
+    /**
+     * @return the time taken to search the given depth during the last call to best, in nanoseconds. 0 if the depth was not fully searched
+     */
+    public long timeTakenInNanoSeconds(int depth) {
+        return depth < depthDurations.length ? depthDurations[depth] : 0;
+    }
+
+    /**
+     * The time of a depth is predicted from the time of the previous depth, multiplied by its growth from the depth before (the effective
+     * branching factor). Without two previous depths, the depth is started anyway.
+     */
+    private boolean fitsInRemainingTime(int depth, int depthStart) {
+        if (depth < depthStart + 2 || depthDurations[depth - 2] <= 0) {
+            return true;
+        }
+        final long previousDuration = depthDurations[depth - 1];
+        final double growth = Math.max(1, (double) previousDuration / depthDurations[depth - 2]);
+        return previousDuration * growth <= timer.remainingTimeInNanoSeconds();
+    }
+
+    /**
+     * Only a search that prunes benefits from the order of the moves. Without pruning, the order only breaks the ties between the moves: keeping
+     * the order of the generator, each depth returns the same move as a search started at this depth.
+     */
+    private boolean ordersMoves() {
+        return mode != Mode.MAX_N || bounded != null;
+    }
+
+    /**
+     * Search first the root moves that were the best at the previous depth. The moves unknown at the previous depth are searched last.
+     */
+    private void orderRootMoves(MoveBuffer<M> moves) {
+        if (rankedRootMovesCount == 0 || !ordersMoves()) {
+            return;
+        }
+        if (rootScores.length < moves.size()) {
+            rootScores = new int[moves.size() * 2];
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            int rank = rankedRootMovesCount;
+            for (int j = 0; j < rankedRootMovesCount; j++) {
+                if (moves.get(i).equals(rankedRootMoves[j])) {
+                    rank = j;
+                    break;
+                }
             }
-            return bestMove;
+            rootScores[i] = -rank;
         }
-        // Final state?
-        evaluations++;
-        return new TreeNode<>(board.evaluate(depth), null, board, depth);
+        moves.sortByScores(0, rootScores);
     }
 
-    private List<TreeNode<M, G>> evaluatesMoves(List<M> generatedMoves, G board, int depth) throws TimeoutException {
-        final List<TreeNode<M, G>> evaluatedMoves = new ArrayList<>();
+    private void rootMoveSearched(M move, double value) {
+        if (rootMovesCount == rootMoves.length) {
+            rootMoves = Arrays.copyOf(rootMoves, Math.max(16, rootMovesCount * 2));
+            rootValues = Arrays.copyOf(rootValues, rootMoves.length);
+        }
+        rootMoves[rootMovesCount] = move;
+        rootValues[rootMovesCount] = value;
+        rootMovesCount++;
+    }
 
-        for (final M move : generatedMoves) {
-            timer.timeCheck();
-            board = move.execute(board);
+    /**
+     * Rank the root moves of the depth just searched by decreasing value, the first searched first for the same value
+     */
+    private void rankRootMoves() {
+        if (rankedRootMoves.length < rootMovesCount) {
+            rankedRootMoves = new Object[rootMoves.length];
+            rankedRootValues = new double[rootMoves.length];
+        }
+        rankedRootMovesCount = 0;
+        for (int i = 0; i < rootMovesCount; i++) {
+            final double value = rootValues[i];
+            int j = rankedRootMovesCount++;
+            while (j > 0 && rankedRootValues[j - 1] < value) {
+                rankedRootMoves[j] = rankedRootMoves[j - 1];
+                rankedRootValues[j] = rankedRootValues[j - 1];
+                j--;
+            }
+            rankedRootMoves[j] = rootMoves[i];
+            rankedRootValues[j] = value;
+        }
+    }
 
+    private boolean isPrincipal(int ply, M move) {
+        return ply < principalVariationLength && move.equals(principalVariation[ply]);
+    }
+
+    /**
+     * Search each root move in its own task, then keep the first of the best ones as the sequential search does
+     */
+    @SuppressWarnings("unchecked")
+    private TreeNode<M, G> bestInParallel(int depth, G game) throws TimeoutException {
+        final MoveBuffer<M> moves = parallelRootMoves;
+        moves.clear();
+        generator.generateMoves(game, moves);
+        if (moves.isEmpty()) {
+            return searcher.best(depth, game);
+        }
+        orderRootMoves(moves);
+        final boolean principal = principalVariationLength > 0;
+        final List<Future<Object[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            final M move = moves.get(i);
+            final G copy = ((ICopyableGame<G>) game).copy();
+            final boolean principalMove = principal && isPrincipal(0, move);
+            tasks.add(pool().submit(() -> {
+                final Searcher taskSearcher = idleSearcher();
+                try {
+                    return taskSearcher.searchRootMove(depth, copy, move, principalMove);
+                } finally {
+                    idleSearchers.add(taskSearcher);
+                }
+            }));
+        }
+        // Wait for all the tasks, so that no searcher is still running when the next search starts
+        TimeoutException timeout = null;
+        TreeNode<M, G> bestMove = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        Object[] bestLine = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            final Object[] line;
+            try {
+                line = tasks.get(i).get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    timeout = (TimeoutException) e.getCause();
+                    continue;
+                }
+                throw new RuntimeException(e.getCause());
+            }
+            final TreeNode<M, G> subTree = (TreeNode<M, G>) line[0];
+            final double value = converter.convert(subTree.getEvaluation(), rootPlayer);
+            rootMoveSearched(subTree.getMove(), value);
+            if (bestMove == null || value > bestValue) {
+                bestMove = subTree;
+                bestValue = value;
+                bestLine = line;
+            }
+        }
+        if (timeout != null) {
+            throw timeout;
+        }
+        if (mode == Mode.MAX_N) {
+            // The line of the best root move is the principal variation, after its sub tree
+            principalVariationLength = bestLine.length - 1;
+            System.arraycopy(bestLine, 1, principalVariation, 0, principalVariationLength);
+        }
+        if (Constants.TRACES) {
+            System.err.println("Best move at depth " + depth + ": " + bestMove);
+        }
+        return bestMove;
+    }
+
+    private Searcher idleSearcher() {
+        final Searcher idle = idleSearchers.poll();
+        if (idle != null) {
+            idle.allocate();
+            return idle;
+        }
+        final Searcher created = new Searcher(1);
+        created.allocate();
+        synchronized (parallelSearchers) {
+            parallelSearchers.add(created);
+        }
+        return created;
+    }
+
+    private ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * The search state of one thread
+     */
+    private class Searcher {
+        // the ply of the game state the searcher starts from: 0 for the root, 1 for a root move searched in parallel
+        private final int rootPly;
+        private int rootDepth;
+        private int evaluations;
+        private final List<G> leaves = new ArrayList<>();
+        private double[][] leafEvaluations = new double[0][];
+        private double[] leafEvaluation = new double[0];
+        // One move buffer per remaining depth (per ply in the alpha beta modes), reused by all the game states searched at this depth
+        private final List<MoveBuffer<M>> moveBuffers = new ArrayList<>();
+        // For each remaining depth of the current line: the player, his best evaluation so far and its score, and whether the last move is searched
+        private int[] searchedPlayers = new int[0];
+        private double[][] searchedBests = new double[0][];
+        private double[] searchedBestValues = new double[0];
+        private boolean[] searchingLastMove = new boolean[0];
+        // Max-N: the best line found under the game state of each remaining depth, indexed by remaining depth from lineEnds[depth] to depth
+        private Object[][] lines = new Object[0][];
+        private int[] lineEnds = new int[0];
+        // Alpha beta modes: the best move found at each ply, with the evaluation and the game state of the end of its line
+        private Object[] principalMoves = new Object[0];
+        private Object[] principalGames = new Object[0];
+        private double[][] principalEvaluations = new double[0][];
+
+        Searcher(int rootPly) {
+            this.rootPly = rootPly;
+        }
+
+        void allocate() {
+            if (leafEvaluation.length != players) {
+                leafEvaluation = new double[players];
+            }
+            // In Best-Reply mode, the players that do not reply add one ply each without consuming depth
+            final int plies = mode == Mode.BEST_REPLY ? (depthMax + 1) * players + 1 : depthMax + 2;
+            while (moveBuffers.size() < plies) {
+                moveBuffers.add(new MoveBuffer<>());
+            }
+            if (searchedPlayers.length < depthMax + 1) {
+                searchedPlayers = new int[depthMax + 1];
+                searchedBests = new double[depthMax + 1][];
+                searchedBestValues = new double[depthMax + 1];
+                searchingLastMove = new boolean[depthMax + 1];
+                lines = new Object[depthMax + 1][depthMax + 1];
+                lineEnds = new int[depthMax + 1];
+            }
+            if (principalMoves.length < plies || principalEvaluations[0].length != players) {
+                principalMoves = new Object[plies];
+                principalGames = new Object[plies];
+                principalEvaluations = new double[plies][players];
+            }
+        }
+
+        /**
+         * Search the game tree from the root, at the given depth
+         */
+        @SuppressWarnings("unchecked")
+        TreeNode<M, G> best(int depth, G game) throws TimeoutException {
+            rootDepth = depth;
+            if (mode == Mode.MAX_N) {
+                final TreeNode<M, G> bestMove = bestInternal(depth, game, true);
+                principalVariationLength = depth + 1 - lineEnds[depth];
+                for (int ply = 0; ply < principalVariationLength; ply++) {
+                    principalVariation[ply] = lines[depth][depth - ply];
+                }
+                return bestMove;
+            }
+            search(game, depth, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false);
+            final TreeNode<M, G> bestMove = new TreeNode<>(principalEvaluations[0].clone(), (M) principalMoves[0], (G) principalGames[0], depth);
+            if (Constants.TRACES) {
+                System.err.println("Best move at depth " + depth + ": " + bestMove);
+            }
+            return bestMove;
+        }
+
+        /**
+         * Search the sub tree of a root move, on a copy of the root game state
+         *
+         * @return the TreeNode of the move, followed by the line of moves it leads to
+         */
+        @SuppressWarnings("unchecked")
+        Object[] searchRootMove(int depth, G game, M move, boolean principal) throws TimeoutException {
+            timer.timeCheck();
+            final G subBoard = move.execute(game);
             if (depth == 0) {
                 evaluations++;
-                evaluatedMoves.add(new TreeNode<M, G>(board.evaluate(depth), move, board, depth));
+                return new Object[] { new TreeNode<M, G>(subBoard.evaluate(0), move, subBoard, 0), move };
+            }
+            rootDepth = depth - 1;
+            if (mode == Mode.MAX_N) {
+                final TreeNode<M, G> subTree = bestInternal(depth - 1, subBoard, principal);
+                final int lineEnd = lineEnds[depth - 1];
+                final Object[] line = new Object[depth - lineEnd + 2];
+                line[0] = new TreeNode<>(subTree.getEvaluation(), move, subTree.getGame(), depth);
+                line[1] = move;
+                for (int i = 2; i < line.length; i++) {
+                    line[i] = lines[depth - 1][depth + 1 - i];
+                }
+                return line;
+            }
+            search(subBoard, depth - 1, 1, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false);
+            return new Object[] { new TreeNode<>(principalEvaluations[1].clone(), move, (G) principalGames[1], depth), move };
+        }
+
+
+        /**
+         * @param principal
+         *            true if the game state is on the principal variation of the previous depth
+         */
+        private TreeNode<M, G> bestInternal(int depth, G board, boolean principal) throws TimeoutException {
+            final MoveBuffer<M> generatedMoves = moveBuffers.get(depth);
+            generatedMoves.clear();
+            generator.generateMoves(board, generatedMoves);
+            if (generatedMoves.isEmpty()) {
+                // Final state
+                evaluations++;
+                lineEnds[depth] = depth + 1;
+                return new TreeNode<>(board.evaluate(depth), null, board, depth);
+            }
+            // The move of the principal variation first, its sub tree is likely to be on the principal variation again
+            final int ply = rootPly + rootDepth - depth;
+            if (ply == 0) {
+                orderRootMoves(generatedMoves);
+            } else if (principal && ply < principalVariationLength && ordersMoves()) {
+                final int index = generatedMoves.indexOf(principalVariation[ply]);
+                if (index > 0) {
+                    generatedMoves.moveToFront(index);
+                }
+            }
+            principal = principal && ply < principalVariationLength && generatedMoves.get(0).equals(principalVariation[ply]);
+            if (depth == 0 && batchEvaluator != null) {
+                return bestOfLeaves(generatedMoves, board);
+            }
+            final int player = board.currentPlayer();
+            searchedPlayers[depth] = player;
+            searchedBests[depth] = null;
+            TreeNode<M, G> bestMove = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < generatedMoves.size(); i++) {
+                final M move = generatedMoves.get(i);
+                timer.timeCheck();
+                searchingLastMove[depth] = i == generatedMoves.size() - 1;
+                final G subBoard = move.execute(board);
+
+                final double value;
+                final boolean better;
+                if (depth == 0) {
+                    // Evaluate the leaves in the same array, only the best evaluation so far is copied
+                    evaluations++;
+                    subBoard.evaluate(0, leafEvaluation);
+                    value = converter.convert(leafEvaluation, player);
+                    // The first of the best moves is kept
+                    better = bestMove == null || value > bestValue;
+                    if (better) {
+                        bestMove = new TreeNode<M, G>(leafEvaluation.clone(), move, subBoard, 0);
+                    }
+                } else {
+                    final TreeNode<M, G> bestSubTree = bestInternal(depth - 1, subBoard, principal && i == 0);
+                    value = converter.convert(bestSubTree.getEvaluation(), player);
+                    better = bestMove == null || value > bestValue;
+                    if (better) {
+                        bestMove = new TreeNode<>(bestSubTree.getEvaluation(), move, bestSubTree.getGame(), depth);
+                    }
+                }
+                if (Constants.TRACES) {
+                    System.err.println("Evaluated move " + move + " at depth " + depth + ": " + value);
+                }
+
+                board = move.cancel(subBoard);
+                if (ply == 0) {
+                    rootMoveSearched(move, value);
+                }
+                if (better) {
+                    bestValue = value;
+                    searchedBests[depth] = bestMove.getEvaluation();
+                    searchedBestValues[depth] = value;
+                    keepLine(depth, move);
+                    if (bounded != null && prunes(depth, player, value)) {
+                        break;
+                    }
+                }
+            }
+            if (Constants.TRACES) {
+                System.err.println("Best move at depth " + depth + ": " + bestMove);
+            }
+            return bestMove;
+        }
+
+        private void keepLine(int depth, M move) {
+            lines[depth][depth] = move;
+            if (depth == 0) {
+                lineEnds[0] = 0;
             } else {
-                final TreeNode<M, G> bestSubTree = bestInternal(depth - 1, board);
-                evaluatedMoves.add(new TreeNode<>(bestSubTree.getEvaluation(), move, bestSubTree.getGame(), depth));
+                final int lineEnd = lineEnds[depth - 1];
+                System.arraycopy(lines[depth - 1], lineEnd, lines[depth], lineEnd, depth - lineEnd);
+                lineEnds[depth] = lineEnd;
+            }
+        }
+
+        /**
+         * Max-N pruning, possible when the scores are bounded: the search of a game state stops as soon as its value can not change the move
+         * chosen by its father or grand father.
+         *
+         * @param depth
+         *            the depth of the game state searched
+         * @param player
+         *            the player playing in this game state
+         * @param bestValue
+         *            the score of the player of the best move found so far, it can only increase with the next moves
+         * @return true if the next moves do not need to be searched
+         */
+        private boolean prunes(int depth, int player, double bestValue) {
+            final int father = depth + 1;
+            if (father > rootDepth || searchedBests[father] == null || searchedPlayers[father] == player) {
+                return false;
+            }
+            // Shallow pruning: whatever the move chosen here, the father gets at most what the other players leave him,
+            // not more than the best score he already has. He keeps his first best move.
+            if (maxScoreSum - bestValue - (players - 2) * minScore <= searchedBestValues[father]) {
+                return true;
             }
+            // Deep pruning of the last move of the father: if the father chooses this game state, his own score is higher than his best score
+            // so far and the score of the grand father is lower than his best so far. If he keeps his best move, the grand father does not want it either.
+            // Either way, the grand father keeps his best move.
+            final int grandFather = depth + 2;
+            if (grandFather > rootDepth || !searchingLastMove[father] || searchedBests[grandFather] == null) {
+                return false;
+            }
+            final int grandFatherPlayer = searchedPlayers[grandFather];
+            if (grandFatherPlayer == player || grandFatherPlayer == searchedPlayers[father]) {
+                return false;
+            }
+            final double grandFatherBest = searchedBestValues[grandFather];
+            return converter.convert(searchedBests[father], grandFatherPlayer) <= grandFatherBest
+                    && maxScoreSum - searchedBestValues[father] - bestValue - (players - 3) * minScore <= grandFatherBest;
+        }
 
-            board = move.cancel(board);
+        /**
+         * Evaluate all the moves of the last depth with the batch evaluator, and keep the best one
+         */
+        private TreeNode<M, G> bestOfLeaves(MoveBuffer<M> generatedMoves, G board) throws TimeoutException {
+            leaves.clear();
+            for (int i = 0; i < generatedMoves.size(); i++) {
+                final M move = generatedMoves.get(i);
+                timer.timeCheck();
+                final G leaf = move.execute(board);
+                // A game state modified in place would be modified back by the cancel
+                leaves.add(leaf == board ? copy(leaf) : leaf);
+                board = move.cancel(leaf);
+            }
+            if (leafEvaluations.length < leaves.size() || leafEvaluations[0].length != players) {
+                leafEvaluations = new double[Math.max(leaves.size(), leafEvaluations.length)][players];
+            }
+            batchEvaluator.evaluate(leaves, 0, leafEvaluations);
+            evaluations += leaves.size();
+            final int player = board.currentPlayer();
+            int bestLeaf = 0;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < leaves.size(); i++) {
+                final double value = converter.convert(leafEvaluations[i], player);
+                if (rootPly == 0 && rootDepth == 0) {
+                    rootMoveSearched(generatedMoves.get(i), value);
+                }
+                if (i == 0 || value > bestValue) {
+                    bestLeaf = i;
+                    bestValue = value;
+                }
+            }
+            keepLine(0, generatedMoves.get(bestLeaf));
+            final TreeNode<M, G> bestMove = new TreeNode<M, G>(leafEvaluations[bestLeaf].clone(), generatedMoves.get(bestLeaf), leaves.get(bestLeaf), 0);
+            leaves.clear();
+            return bestMove;
         }
 
-        return evaluatedMoves;
+        /**
+         * Alpha beta search of the Paranoid and Best-Reply modes: the root player maximizes its score, the other players minimize it.
+         * The best move of the game state and the end of its line are stored at the index ply of the principal arrays.
+         *
+         * @param replied
+         *            true if one of the other players already replied to the last move of the root player (Best-Reply mode)
+         * @return the score of the game state for the root player
+         */
+        private double search(G board, int depth, int ply, double alpha, double beta, boolean replied) throws TimeoutException {
+            final boolean maximizing = board.currentPlayer() == rootPlayer;
+            final MoveBuffer<M> moves = moveBuffers.get(ply);
+            moves.clear();
+            generator.generateMoves(board, moves);
+            if (ply == 0) {
+                orderRootMoves(moves);
+            }
+            if (moves.isEmpty()) {
+                // Final state
+                evaluations++;
+                board.evaluate(depth, principalEvaluations[ply]);
+                principalMoves[ply] = null;
+                principalGames[ply] = board;
+                return converter.convert(principalEvaluations[ply], rootPlayer);
+            }
+            double bestValue = maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            boolean found = false;
+            if (mode == Mode.BEST_REPLY && !maximizing) {
+                final M pass = nullMoveGenerator.generateNullMove(board);
+                if (pass != null) {
+                    timer.timeCheck();
+                    final G subBoard = pass.execute(board);
+                    try {
+                        // At least one of the other players must reply
+                        if (replied || subBoard.currentPlayer() != rootPlayer) {
+                            bestValue = search(subBoard, depth, ply + 1, alpha, beta, replied);
+                            found = true;
+                        }
+                    } finally {
+                        board = pass.cancel(subBoard);
+                    }
+                    if (found) {
+                        keepPrincipalLine(ply, pass);
+                        if (replied || bestValue <= alpha) {
+                            return bestValue;
+                        }
+                        beta = Math.min(beta, bestValue);
+                    }
+                }
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                timer.timeCheck();
+                final M move = moves.get(i);
+                final G subBoard = move.execute(board);
+                final double value;
+                try {
+                    if (depth == 0) {
+                        evaluations++;
+                        subBoard.evaluate(0, leafEvaluation);
+                        value = converter.convert(leafEvaluation, rootPlayer);
+                    } else {
+                        value = search(subBoard, depth - 1, ply + 1, alpha, beta, !maximizing);
+                    }
+                } finally {
+                    board = move.cancel(subBoard);
+                }
+                if (ply == 0) {
+                    rootMoveSearched(move, value);
+                }
+                if (!found || (maximizing ? value > bestValue : value < bestValue)) {
+                    found = true;
+                    bestValue = value;
+                    if (depth == 0) {
+                        principalMoves[ply] = move;
+                        principalGames[ply] = subBoard;
+                        System.arraycopy(leafEvaluation, 0, principalEvaluations[ply], 0, players);
+                    } else {
+                        keepPrincipalLine(ply, move);
+                    }
+                    if (maximizing) {
+                        alpha = Math.max(alpha, value);
+                    } else {
+                        beta = Math.min(beta, value);
+                    }
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+            return bestValue;
+        }
+
+        private void keepPrincipalLine(int ply, M move) {
+            principalMoves[ply] = move;
+            principalGames[ply] = principalGames[ply + 1];
+            System.arraycopy(principalEvaluations[ply + 1], 0, principalEvaluations[ply], 0, players);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private G copy(G game) {
+        if (!(game instanceof ICopyableGame)) {
+            throw new IllegalArgumentException("Batch evaluation of game states modified in place requires game states implementing ICopyableGame");
+        }
+        return ((ICopyableGame<G>) game).copy();
     }
 
     /**
-     * @return the total count of evaluations performed. Useful for performances stats :)
+     * @return the count of evaluations performed by the last search, all threads included. Useful for performances stats :)
      */
     public int evaluations() {
+        int evaluations = searcher.evaluations;
+        for (final Searcher parallelSearcher : parallelSearchers) {
+            evaluations += parallelSearcher.evaluations;
+        }
         return evaluations;
     }
-}
+}
@@ -0,0 +1,36 @@
+package competitive.programming.gametheory.mcts;
+
+import java.util.List;
+import java.util.Random;
+
+import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IMove;
+
+/**
+ * @author Manwe
+ *
+ *         Interface selecting the move played at each step of a Monte Carlo simulation (rollout).
+ *
+ *         Hint: a purely random policy is cheap but the simulated games are far from what real players would do. Favoring obviously good moves
+ *         (captures, moves toward the goal...) makes each simulation a lot more meaningful, as long as the policy stays cheap and a bit random.
+ *
+ * @param <M>
+ *            The move class representing the action a player can do
+ * @param <G>
+ *            The game class representing the game state
+ */
+@FunctionalInterface
+public interface IRolloutPolicy<M extends IMove<G>, G extends IGame> {
+    /**
+     * Select the move the current player plays during a simulation
+     *
+     * @param game
+     *            the simulated game state
+     * @param moves
+     *            the moves the current player can do. Never empty
+     * @param random
+     *            the random generator of the search, so that searches can be reproduced with a seed
+     * @return the selected move
+     */
+    M select(G game, List<M> moves, Random random);
+}
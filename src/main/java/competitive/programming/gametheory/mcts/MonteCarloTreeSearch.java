@@ -0,0 +1,344 @@
+package competitive.programming.gametheory.mcts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IMove;
+import competitive.programming.gametheory.IMoveGenerator;
+import competitive.programming.gametheory.common.IScoreConverter;
+import competitive.programming.timemanagement.TimeoutException;
+import competitive.programming.timemanagement.Timer;
+
+/**
+ * @author Manwe
+ *
+ *         MonteCarloTreeSearch class allows to find the best move a player can do
+ *         considering the other N players will be playing their best move at each iteration
+ *
+ *         Instead of evaluating all the game states up to a given depth, it samples the game tree. Until you get out of time, it repeats:
+ *         - selection: from the root, select the child maximizing the UCB1 formula for the player to play, until reaching a node having moves not yet explored
+ *         - expansion: execute one of these moves and add the game state to the tree
+ *         - simulation: play moves chosen by the rollout policy from this game state, until the end of the game or the rollout depth, and evaluate the reached game state
+ *         - backpropagation: add the evaluation of every player to the nodes from the expanded one up to the root
+ *         When running out of time (or you reached the maximum number of iterations you fixed) you return the most visited move.
+ *
+ *         UCB1 balances exploitation and exploration: for the player to play, the value of a child is its mean converted score
+ *         plus explorationFactor * sqrt(ln(visits of the father) / visits of the child).
+ * @see <a href="https://en.wikipedia.org/wiki/Monte_Carlo_tree_search">Monte Carlo tree search</a>
+ *
+ *   Warning:
+ *         When you apply a move, you MUST return a new instance of the game because the game states are kept in the tree
+ *
+ *   Hint: The exploration factor must be of the same magnitude as the converted scores. If your evaluation returns values between -1 and 1,
+ *         start with sqrt(2) and tune it from there.
+ *   Hint: MCTS shines when the branching factor is too high for a MaxNTree to search deep enough, and when evaluating a game state in the middle of the game is hard.
+ *         If you have a good evaluation function, you might prefer a TreeSearch.
+ * @param <M>
+ *            The class that model a move in the game tree
+ * @param <G>
+ *            The class that model the Game state
+ */
+public class MonteCarloTreeSearch<M extends IMove<G>, G extends IGame> {
+    private final Timer timer;
+    private final double explorationFactor;
+    private final int rolloutDepth;
+    private final IScoreConverter converter;
+    private IRolloutPolicy<M, G> rolloutPolicy = (game, moves, random) -> moves.get(random.nextInt(moves.size()));
+    private Random random = new Random();
+    private int iterationsPerformed;
+    private int iterationsMax = 0;
+    private MonteCarloNode<M, G> root;
+    private MonteCarloNode<M, G> best;
+    private double[] meanScores;
+
+    static class MonteCarloNode<M, G extends IGame> {
+        private final M move;
+        private final G game;
+        private final int depth;
+        private MonteCarloNode<M, G> father;
+        private final List<MonteCarloNode<M, G>> subNodes = new ArrayList<>();
+        private List<M> untriedMoves;
+        private int visits;
+        private double[] scores;
+
+        MonteCarloNode(M move, G game, int depth, MonteCarloNode<M, G> father) {
+            this.move = move;
+            this.game = game;
+            this.depth = depth;
+            this.father = father;
+        }
+
+        void backPropagate(double[] evaluation) {
+            for (MonteCarloNode<M, G> node = this; node != null; node = node.father) {
+                node.visits++;
+                if (node.scores == null) {
+                    node.scores = evaluation.clone();
+                } else {
+                    for (int i = 0; i < evaluation.length; i++) {
+                        node.scores[i] += evaluation[i];
+                    }
+                }
+            }
+        }
+
+        double[] meanScores() {
+            return meanScores(new double[scores.length]);
+        }
+
+        double[] meanScores(double[] mean) {
+            for (int i = 0; i < scores.length; i++) {
+                mean[i] = scores[i] / visits;
+            }
+            return mean;
+        }
+
+        int visits() {
+            return visits;
+        }
+
+        @Override
+        public String toString() {
+            return "MonteCarloNode{Move=" + move + ",visits=" + visits + ",depth=" + depth + "}";
+        }
+    }
+
+    /**
+     * Creates a new Monte Carlo Tree Search.
+     *
+     * @param timer
+     *            timer instance in order to interrupt the search of the best move
+     *            if we are running out of time
+     * @param explorationFactor
+     *            Configure if the search should favor the most promising moves (small value) or explore more the others (large value)
+     * @param rolloutDepth
+     *            the maximum number of moves played in a simulation. The game state reached is then evaluated, even if the game is not ended
+     * @param converter
+     *            A score converter is used so we can configure how the players
+     *            are taking into consideration other players scores.
+     *            It is applied to the mean of the evaluations of the simulations.
+     */
+    public MonteCarloTreeSearch(Timer timer, double explorationFactor, int rolloutDepth, IScoreConverter converter) {
+        if (rolloutDepth < 0) {
+            throw new IllegalArgumentException("Rollout depth can not be negative");
+        }
+        this.timer = timer;
+        this.explorationFactor = explorationFactor;
+        this.rolloutDepth = rolloutDepth;
+        this.converter = converter;
+    }
+
+    /**
+     * @param rolloutPolicy
+     *            select the moves played during the simulations. By default, the moves are selected randomly
+     */
+    public void setRolloutPolicy(IRolloutPolicy<M, G> rolloutPolicy) {
+        this.rolloutPolicy = rolloutPolicy;
+    }
+
+    /**
+     * @param random
+     *            the random generator used by the simulations. Give a seeded one to reproduce a search
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @param iterationsMax
+     *            limit the number of iterations (selection, expansion, simulation and backpropagation).
+     *
+     *            This is nice for testing because you don't want to rely on your computer performances
+     */
+    public void setIterationsMax(int iterationsMax) {
+        this.iterationsMax = iterationsMax;
+    }
+
+    /**
+     * @return the count of iterations performed by the last search. Useful for performances stats :)
+     */
+    public int iterations() {
+        return iterationsPerformed;
+    }
+
+    /**
+     * @param game
+     *            The current state of the game
+     * @param generator
+     *            The move generator that will generate all the possible move of
+     *            the playing player at each turn
+     * @return the best move you can play considering all players are selecting
+     *         the best move for them
+     */
+    public M best(final G game, final IMoveGenerator<M, G> generator) {
+        root = new MonteCarloNode<>(null, game, 0, null);
+        return continueBest(generator);
+    }
+
+    /**
+     * Prun the tree of all the nodes that are not under the selected executedMove.
+     * Use this when you want to keep a part of the tree between several iterations.
+     * Then call continueBest in order to find the next interesting move.
+     *
+     * @param executedMove
+     *            The move that will be your new root of the tree. All the other subtrees will be removed
+     */
+    public void prun(M executedMove) {
+        MonteCarloNode<M, G> newRoot = null;
+        for (final MonteCarloNode<M, G> subNode : root.subNodes) {
+            if (subNode.move.equals(executedMove)) {
+                newRoot = subNode;
+            }
+        }
+        if (newRoot == null) {
+            // The move has never been explored
+            newRoot = new MonteCarloNode<>(executedMove, executedMove.execute(root.game), root.depth + 1, null);
+        }
+        newRoot.father = null;
+        root = newRoot;
+        best = null;
+    }
+
+    /**
+     * Continue the exploration of a game tree in order to find the best move possible until we reach the timeout.
+     *
+     * @param generator
+     *            The move generator that will generate all the possible move of
+     *            the playing player at each turn
+     * @return the best move you can play considering all players are selecting
+     *         the best move for them
+     */
+    public M continueBest(final IMoveGenerator<M, G> generator) {
+        iterationsPerformed = 0;
+        try {
+            while (iterationsMax <= 0 || iterationsPerformed < iterationsMax) {
+                timer.timeCheck();
+                if (!iteration(generator)) {
+                    // The game is already ended, there is no move to search
+                    break;
+                }
+                iterationsPerformed++;
+            }
+        } catch (final TimeoutException e) {
+            // Times up!
+        }
+        return returnCurrentBest();
+    }
+
+    /**
+     * @return the mean evaluation of the best move so far. null before the first search, or when the root game state has no move
+     */
+    public double[] bestEval() {
+        if (best == null)
+            return null;
+        return best.meanScores();
+    }
+
+    /**
+     * @return the game state corresponding to the best move returned by
+     *         best method It is mandatory to run best method first!
+     */
+    public G bestGame() {
+        if (best == null)
+            return null;
+        return best.game;
+    }
+
+    /**
+     * For testing purpose
+     */
+    MonteCarloNode<M, G> getRoot() {
+        return root;
+    }
+
+    private boolean iteration(IMoveGenerator<M, G> generator) {
+        MonteCarloNode<M, G> node = root;
+        // Selection
+        while (untriedMoves(node, generator).isEmpty()) {
+            if (node.subNodes.isEmpty()) {
+                // End of the game: nothing to simulate
+                if (node == root) {
+                    return false;
+                }
+                node.backPropagate(node.game.evaluate(node.depth - root.depth));
+                return true;
+            }
+            node = select(node);
+        }
+        // Expansion
+        final M move = node.untriedMoves.remove(node.untriedMoves.size() - 1);
+        final G game = move.execute(node.game);
+        if (game == node.game) {
+            throw new IllegalArgumentException(
+                    "Your game state is not duplicated! Monte Carlo tree search require to duplicate the game state since it keeps the game states in the tree");
+        }
+        final MonteCarloNode<M, G> expanded = new MonteCarloNode<>(move, game, node.depth + 1, node);
+        node.subNodes.add(expanded);
+        // Simulation and backpropagation
+        expanded.backPropagate(rollout(expanded, generator));
+        return true;
+    }
+
+    private List<M> untriedMoves(MonteCarloNode<M, G> node, IMoveGenerator<M, G> generator) {
+        if (node.untriedMoves == null) {
+            node.untriedMoves = new ArrayList<>(generator.generateMoves(node.game));
+        }
+        return node.untriedMoves;
+    }
+
+    private MonteCarloNode<M, G> select(MonteCarloNode<M, G> node) {
+        final int player = node.game.currentPlayer();
+        final double logVisits = Math.log(node.visits);
+        MonteCarloNode<M, G> selected = null;
+        double selectedValue = Double.NEGATIVE_INFINITY;
+        for (final MonteCarloNode<M, G> subNode : node.subNodes) {
+            final double value = convertedMean(subNode, player)
+                    + explorationFactor * Math.sqrt(logVisits / subNode.visits);
+            if (value > selectedValue) {
+                selectedValue = value;
+                selected = subNode;
+            }
+        }
+        return selected;
+    }
+
+    private double convertedMean(MonteCarloNode<M, G> node, int player) {
+        if (meanScores == null || meanScores.length != node.scores.length) {
+            meanScores = new double[node.scores.length];
+        }
+        return converter.convert(node.meanScores(meanScores), player);
+    }
+
+    private double[] rollout(MonteCarloNode<M, G> node, IMoveGenerator<M, G> generator) {
+        G game = node.game;
+        int depth = node.depth - root.depth;
+        for (int i = 0; i < rolloutDepth; i++) {
+            final List<M> moves = generator.generateMoves(game);
+            if (moves.isEmpty()) {
+                break;
+            }
+            game = rolloutPolicy.select(game, moves, random).execute(game);
+            depth++;
+        }
+        return game.evaluate(depth);
+    }
+
+    private M returnCurrentBest() {
+        best = null;
+        // The most visited move is the most robust choice: its mean score is the most reliable one
+        final int player = root.game.currentPlayer();
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (final MonteCarloNode<M, G> subNode : root.subNodes) {
+            if (best != null && subNode.visits < best.visits) {
+                continue;
+            }
+            final double score = convertedMean(subNode, player);
+            if (best == null || subNode.visits > best.visits || score > bestScore) {
+                best = subNode;
+                bestScore = score;
+            }
+        }
+        return best == null ? null : best.move;
+    }
+}
@@ -0,0 +1,21 @@
+package competitive.programming.gametheory.minimax;
+
+/**
+ * @author Manwe
+ *
+ *         Associates each move with an index, so that move ordering tables can be simple arrays instead of maps.
+ *         Two moves that are equal must have the same index. Typically the index is computed from the start and end position of the move,
+ *         and possibly the player playing it.
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ */
+@FunctionalInterface
+public interface IMoveIndexer<M> {
+    /**
+     * @param move
+     *            the move to index
+     * @return an index between 0 (included) and the number of indexes declared to the move ordering (excluded)
+     */
+    int index(M move);
+}
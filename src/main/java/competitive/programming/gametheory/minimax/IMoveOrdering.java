@@ -0,0 +1,50 @@
+package competitive.programming.gametheory.minimax;
+
+import java.util.List;
+
+/**
+ * @author Manwe
+ *
+ *         Strategy ordering the moves before the Minimax explores them. The sooner the best move is explored, the more the alpha beta prunes.
+ *         It learns from the moves that caused a cutoff during the search.
+ *
+ *         The Minimax creates one instance per search thread, so an implementation does not need to be thread safe.
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ */
+public interface IMoveOrdering<M> {
+    /**
+     * Called once at the beginning of each call to Minimax.best, before the iterative deepening: not between its depths, and even when best
+     * is called again on the same game state. Reset here what depends on the root of the search, the plies of the killer moves for example.
+     */
+    void startSearch();
+
+    /**
+     * Reorder in place the moves, the most promising first
+     *
+     * @param moves
+     *            the generated moves, in the MoveBuffer of the ply. Its codes must follow the moves: reorder it with its own methods
+     * @param from
+     *            the index of the first move to order. The moves before are already ordered by the Minimax (killer or transposition table move)
+     * @param ply
+     *            the number of moves executed since the root of the search
+     * @param previousMove
+     *            the move that lead to the game state, null at the root
+     */
+    void order(List<M> moves, int from, int ply, M previousMove);
+
+    /**
+     * Called when a move was good enough to prune the other moves of its game state
+     *
+     * @param move
+     *            the move that caused the cutoff
+     * @param ply
+     *            the number of moves executed since the root of the search
+     * @param depth
+     *            the remaining depth that was searched under the move
+     * @param previousMove
+     *            the move that lead to the game state, null at the root
+     */
+    void cutoff(M move, int ply, int depth, M previousMove);
+}
@@ -0,0 +1,148 @@
+package competitive.programming.gametheory.minimax;
+
+import java.util.Arrays;
+import java.util.List;
+
+import competitive.programming.gametheory.MoveBuffer;
+
+/**
+ * @author Manwe
+ *
+ *         Move ordering combining the classic heuristics:
+ *         - two killer moves per ply: the last moves that caused a cutoff at this ply are tried first in the sibling game states
+ *         - the counter move (optional): the move that last refuted the previous move is tried next
+ *         - the history heuristic: the other moves are sorted by how often they caused a cutoff, weighted by the depth searched
+ *
+ *         All the tables are primitive arrays indexed by the move index, so ordering the moves does not create any garbage.
+ * @see <a href="https://www.chessprogramming.org/Killer_Heuristic">Killer heuristic</a> and <a href="https://www.chessprogramming.org/History_Heuristic">History heuristic</a>
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ */
+public class KillerHistoryOrdering<M> implements IMoveOrdering<M> {
+    private static final int NONE = -1;
+    private static final int FIRST_KILLER_SCORE = Integer.MAX_VALUE;
+    private static final int SECOND_KILLER_SCORE = Integer.MAX_VALUE - 1;
+    private static final int COUNTER_MOVE_SCORE = Integer.MAX_VALUE - 2;
+    private static final int HISTORY_MAX = 1 << 24;
+
+    private final IMoveIndexer<M> indexer;
+    private final int[] history;
+    private final int[] counterMoves;
+    private int[] killers = new int[0];
+    private int[] scores = new int[32];
+    private boolean codesAsIndexes;
+
+    /**
+     * @param indexer
+     *            associates each move with its index in the tables
+     * @param moveIndexes
+     *            the number of different indexes the indexer can return
+     * @param counterMoves
+     *            true to also try first the move that last refuted the previous move
+     */
+    public KillerHistoryOrdering(IMoveIndexer<M> indexer, int moveIndexes, boolean counterMoves) {
+        this.indexer = indexer;
+        this.history = new int[moveIndexes];
+        this.counterMoves = counterMoves ? new int[moveIndexes] : null;
+        if (counterMoves) {
+            Arrays.fill(this.counterMoves, NONE);
+        }
+    }
+
+    /**
+     * Use the codes the generator added the moves with in the MoveBuffer as move indexes, instead of calling the indexer on each move to order.
+     * The moves added without code are still indexed by the indexer.
+     *
+     * @param codesAsIndexes
+     *            true if the generator codes the moves with the same index as the indexer
+     */
+    public void setCodesAsIndexes(boolean codesAsIndexes) {
+        this.codesAsIndexes = codesAsIndexes;
+    }
+
+    @Override
+    public void startSearch() {
+        // Killers are related to a ply, they are meaningless once the root changed
+        Arrays.fill(killers, NONE);
+        // Keep the history of the previous searches, with less weight
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void order(List<M> moves, int from, int ply, M previousMove) {
+        final int size = moves.size();
+        if (size - from < 2) {
+            return;
+        }
+        ensureCapacity(ply, size);
+        final int firstKiller = killers[2 * ply];
+        final int secondKiller = killers[2 * ply + 1];
+        final int counterMove = counterMoves != null && previousMove != null ? counterMoves[indexer.index(previousMove)] : NONE;
+        final MoveBuffer<M> buffer = moves instanceof MoveBuffer ? (MoveBuffer<M>) moves : null;
+        for (int i = from; i < size; i++) {
+            final int code = codesAsIndexes && buffer != null ? buffer.code(i) : MoveBuffer.NO_CODE;
+            final int index = code != MoveBuffer.NO_CODE ? code : indexer.index(moves.get(i));
+            if (index == firstKiller) {
+                scores[i] = FIRST_KILLER_SCORE;
+            } else if (index == secondKiller) {
+                scores[i] = SECOND_KILLER_SCORE;
+            } else if (index == counterMove) {
+                scores[i] = COUNTER_MOVE_SCORE;
+            } else {
+                scores[i] = history[index];
+            }
+        }
+        if (buffer != null) {
+            // Keep the codes with their moves
+            buffer.sortByScores(from, scores);
+            return;
+        }
+        // Insertion sort: few moves, already partially sorted by the generator, and stable
+        for (int i = from + 1; i < size; i++) {
+            final int score = scores[i];
+            final M move = moves.get(i);
+            int j = i - 1;
+            while (j >= from && scores[j] < score) {
+                scores[j + 1] = scores[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            scores[j + 1] = score;
+            moves.set(j + 1, move);
+        }
+    }
+
+    @Override
+    public void cutoff(M move, int ply, int depth, M previousMove) {
+        final int index = indexer.index(move);
+        ensureCapacity(ply, 0);
+        if (killers[2 * ply] != index) {
+            killers[2 * ply + 1] = killers[2 * ply];
+            killers[2 * ply] = index;
+        }
+        if (counterMoves != null && previousMove != null) {
+            counterMoves[indexer.index(previousMove)] = index;
+        }
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_MAX) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private void ensureCapacity(int ply, int moves) {
+        if (killers.length < 2 * (ply + 1)) {
+            final int previousLength = killers.length;
+            killers = Arrays.copyOf(killers, 2 * (ply + 1));
+            Arrays.fill(killers, previousLength, killers.length, NONE);
+        }
+        if (scores.length < moves) {
+            scores = new int[moves];
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package competitive.programming.gametheory.minimax;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import competitive.programming.common.Constants;
 import competitive.programming.gametheory.ICancellableMove;
+import competitive.programming.gametheory.ICopyableGame;
 import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IHashableGame;
 import competitive.programming.gametheory.IMoveGenerator;
+import competitive.programming.gametheory.INoisyMoveGenerator;
+import competitive.programming.gametheory.INullMoveGenerator;
+import competitive.programming.gametheory.MoveBuffer;
 import competitive.programming.timemanagement.TimeoutException;
 import competitive.programming.timemanagement.Timer;
 
@@ -29,142 +37,477 @@ import competitive.programming.timemanagement.Timer;
  */
 public class Minimax<M extends ICancellableMove<G>, G extends IGame> {
 
-    private static class AlphaBetaPrunningException extends Exception {
-        private static final long serialVersionUID = 4338636523317720681L;
+    private final Timer timer;
+    private final TranspositionTable<M> transpositionTable;
+    private final boolean principalVariationSearch;
+    private final List<Searcher> searchers = new ArrayList<>();
+    private ExecutorService executor;
+    private volatile boolean stopHelpers;
+    private double aspirationWindow;
+    private INoisyMoveGenerator<M, G> noisyMoveGenerator;
+    private int quiescenceDepth;
+    private INullMoveGenerator<M, G> nullMoveGenerator;
+    private int nullMoveReduction;
+    private int movesBeforeReduction;
+    private int lateMoveReduction;
+
+    /**
+     * Minimax constructor
+     *
+     * @param timer
+     *            timer instance in order to cancel the search of the best move
+     *            if we are running out of time
+     */
+    public Minimax(Timer timer) {
+        this(timer, 0, false);
     }
 
-    private class MinMaxEvaluatedMove implements Comparable<MinMaxEvaluatedMove> {
-        private final M move;
-        private final double value;
-        private final MinMaxEvaluatedMove bestSubMove;
+    /**
+     * Minimax constructor with a transposition table.
+     * The game states explored are stored in the table so that a game state reached by several sequences of moves, or searched again at the next
+     * depth, is not explored from scratch. The table is allocated once here and reused for all the searches.
+     *
+     * Hint: the game class must implement IHashableGame, and its hash must be updated at low cost when a move is executed or canceled (Zobrist hashing)
+     *
+     * @param timer
+     *            timer instance in order to cancel the search of the best move
+     *            if we are running out of time
+     * @param transpositionTableSize
+     *            the number of game states the transposition table can store. Rounded up to the next power of two
+     */
+    public Minimax(Timer timer, int transpositionTableSize) {
+        this(timer, transpositionTableSize, false);
+    }
 
-        public MinMaxEvaluatedMove(M move, double value, MinMaxEvaluatedMove bestSubMove) {
-            this.move = move;
-            this.value = value;
-            this.bestSubMove = bestSubMove;
-        }
+    /**
+     * Minimax constructor with all the search options.
+     *
+     * The principal variation search (also known as NegaScout) only searches the first move of each game state with the full alpha beta window.
+     * The other moves are searched with a null window, which only proves they are not better than the first one and prunes a lot more.
+     * When a move happens to be better, it is searched again with the full window.
+     *
+     * Hint: principal variation search pays off only if the best move is most of the time the first one explored. The killer move and the
+     * transposition table are here for that, but the order in which your generator returns the moves matters too.
+     * @see <a href="https://en.wikipedia.org/wiki/Principal_variation_search">Principal variation search</a>
+     *
+     * @param timer
+     *            timer instance in order to cancel the search of the best move
+     *            if we are running out of time
+     * @param transpositionTableSize
+     *            the number of game states the transposition table can store. Rounded up to the next power of two. 0 to disable the table
+     * @param principalVariationSearch
+     *            true to search the moves after the first one with a null window
+     */
+    public Minimax(Timer timer, int transpositionTableSize, boolean principalVariationSearch) {
+        this(timer, transpositionTableSize, principalVariationSearch, 1);
+    }
 
-        @Override
-        public int compareTo(MinMaxEvaluatedMove o) {
-            if (value > o.value) {
-                return 1;
-            } else if (value < o.value) {
-                return -1;
-            }
-            return 0;
+    /**
+     * Minimax constructor searching on several threads (Lazy SMP).
+     *
+     * All the threads run the same iterative deepening search on their own copy of the game state, and share the transposition table.
+     * Helper threads mostly fill the transposition table with results that the main thread reuses, so it reaches deeper depths.
+     * The helper threads are stopped as soon as the main thread ends its search, either because it reached the maximum depth or because of the timer.
+     *
+     * Hint: the game class must implement ICopyableGame and IHashableGame, and the move generator must support being called by several threads
+     * at the same time. A stateless generator is fine.
+     * Hint: call shutdown once the Minimax is not used anymore, to stop the helper threads.
+     * @see <a href="https://www.chessprogramming.org/Lazy_SMP">Lazy SMP</a>
+     *
+     * @param timer
+     *            timer instance in order to cancel the search of the best move
+     *            if we are running out of time
+     * @param transpositionTableSize
+     *            the number of game states the transposition table can store. Rounded up to the next power of two. Mandatory when using several threads
+     * @param principalVariationSearch
+     *            true to search the moves after the first one with a null window
+     * @param threads
+     *            the number of threads searching the game tree, including the one calling the best method
+     */
+    public Minimax(Timer timer, int transpositionTableSize, boolean principalVariationSearch, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required to search");
         }
-
-        public MinMaxEvaluatedMove getBestSubMove() {
-            return bestSubMove;
+        if (threads > 1 && transpositionTableSize <= 0) {
+            throw new IllegalArgumentException("Threads can only share their search through a transposition table");
         }
-
-        public M getMove() {
-            return move;
+        this.timer = timer;
+        this.transpositionTable = transpositionTableSize > 0 ? new TranspositionTable<>(transpositionTableSize) : null;
+        this.principalVariationSearch = principalVariationSearch;
+        for (int i = 0; i < threads; i++) {
+            searchers.add(new Searcher(i > 0));
         }
+    }
 
-        public double getValue() {
-            return value;
+    /**
+     * Order the moves, after the killer move and the transposition table move, with the given strategy.
+     * Without it, the moves are explored in the order of the generator.
+     *
+     * @param moveOrdering
+     *            creates a move ordering for each search thread. For example () -&gt; new KillerHistoryOrdering&lt;&gt;(indexer, moveIndexes, true)
+     */
+    public void setMoveOrdering(Supplier<IMoveOrdering<M>> moveOrdering) {
+        for (final Searcher searcher : searchers) {
+            searcher.moveOrdering = moveOrdering.get();
         }
+    }
 
-        @Override
-        public String toString() {
-            String str = "M[" + value + ",[";
-            if (move != null) {
-                str += move.toString() + ",";
-            }
-            MinMaxEvaluatedMove subMove = bestSubMove;
-            while (subMove != null) {
-                if (subMove.move != null) {
-                    str += subMove.toString() + ",";
-                }
-                subMove = subMove.bestSubMove != null ? subMove.bestSubMove : null;
-            }
-            return str + "]";
-        }
+    /**
+     * Search each depth after the first one with a narrow window centered on the value found at the previous depth (aspiration window).
+     * A narrow window prunes more, so each depth is searched faster. If the value falls outside of the window, the window is widened
+     * on that side, twice larger each time, and the depth is searched again.
+     *
+     * Hint: the initial window should be a bit larger than the usual variation of the value between two depths.
+     * Too small and you will search each depth several times, too large and you will not prune more.
+     *
+     * @param initialDelta
+     *            the half width of the first window. 0 to disable aspiration windows
+     */
+    public void setAspirationWindow(double initialDelta) {
+        this.aspirationWindow = initialDelta;
     }
 
-    private int depthmax;
-    private MinMaxEvaluatedMove killer;
+    /**
+     * Instead of evaluating the game states at the maximum depth, continue to explore their noisy moves until the game state is quiet (quiescence
+     * search). At each game state, the player can also choose not to play any noisy move and keep the evaluation of the game state (stand pat),
+     * so the noisy moves are only played when they improve the player situation.
+     *
+     * @param noisyMoveGenerator
+     *            generates the noisy moves of a game state. null to disable the quiescence search
+     * @param quiescenceDepth
+     *            the maximum number of noisy moves explored after the maximum depth
+     */
+    public void setQuiescence(INoisyMoveGenerator<M, G> noisyMoveGenerator, int quiescenceDepth) {
+        this.noisyMoveGenerator = noisyMoveGenerator;
+        this.quiescenceDepth = quiescenceDepth;
+    }
 
-    private final Timer timer;
+    /**
+     * Before searching the moves of a game state, let the player pass his turn and search the result with a reduced depth.
+     * If the opponent can still not do better than beta, the player is so far ahead that the game state is pruned (null move pruning).
+     * The pruning is then verified by searching the real moves with the same reduced depth, so that game states where passing is an
+     * advantage are not wrongly pruned.
+     *
+     * Hint: it pays off in games with a high branching factor, where the player having the move is almost always an advantage.
+     *
+     * @param nullMoveGenerator
+     *            generates the move passing the turn. null to disable the null move pruning
+     * @param reduction
+     *            the number of depths removed from the search after the null move, usually 2 or 3
+     */
+    public void setNullMovePruning(INullMoveGenerator<M, G> nullMoveGenerator, int reduction) {
+        if (nullMoveGenerator != null && reduction < 1) {
+            throw new IllegalArgumentException("Null move reduction must be at least 1");
+        }
+        this.nullMoveGenerator = nullMoveGenerator;
+        this.nullMoveReduction = reduction;
+    }
 
     /**
-     * Minimax constructor
+     * Search the moves ordered late with a reduced depth (late move reductions). When the moves are well ordered, the late ones
+     * are rarely the best and the reduced search is enough to prove it. If a reduced move happens to be better than the best one so far,
+     * it is searched again with the full depth.
      *
-     * @param timer
-     *            timer instance in order to cancel the search of the best move
-     *            if we are running out of time
+     * Hint: reductions rely on the move ordering. Use it with the killer move, a transposition table and a move ordering.
+     *
+     * @param movesBeforeReduction
+     *            the number of moves searched with the full depth in each game state
+     * @param reduction
+     *            the number of depths removed from the search of the late moves. 0 to disable late move reductions
      */
-    public Minimax(Timer timer) {
-        this.timer = timer;
+    public void setLateMoveReductions(int movesBeforeReduction, int reduction) {
+        if (reduction > 0 && movesBeforeReduction < 1) {
+            throw new IllegalArgumentException("At least the first move must be searched with the full depth");
+        }
+        this.movesBeforeReduction = movesBeforeReduction;
+        this.lateMoveReduction = reduction;
     }
 
-    private List<MinMaxEvaluatedMove> evaluateSubPossibilities(G game, IMoveGenerator<M, G> generator, int depth, double alpha, double beta, boolean player,
-            boolean alphaBetaAtThisLevel, MinMaxEvaluatedMove previousAnalysisBest) throws AlphaBetaPrunningException, TimeoutException {
-        final List<MinMaxEvaluatedMove> moves = new LinkedList<MinMaxEvaluatedMove>();
+    /**
+     * The search state of one thread
+     */
+    private class Searcher {
+        private final boolean helper;
+        private final TranspositionTable.Entry<M> entry = new TranspositionTable.Entry<>();
+        private final double[] evaluation = new double[2];
+        private IMoveOrdering<M> moveOrdering;
+        private Object[][] principalVariation = new Object[0][];
+        private int[] principalVariationLength = new int[0];
+        private Object[] killers = new Object[0];
+        // One move buffer per ply, reused by all the game states searched at this ply
+        private final List<MoveBuffer<M>> moveBuffers = new ArrayList<>();
+        private boolean verifyingNullMove;
+        private long nodes;
+        private int depthReached;
+        private M best;
+
+        Searcher(boolean helper) {
+            this.helper = helper;
+        }
 
-        List<M> orderedMoves;
-        final List<M> generatedMoves = generator.generateMoves(game);
+        @SuppressWarnings("unchecked")
+        void iterativeDeepening(G game, IMoveGenerator<M, G> generator, int depthStart, int depthMax) {
+            allocate(noisyMoveGenerator != null ? depthMax + quiescenceDepth : depthMax);
+            nodes = 0;
+            depthReached = 0;
+            best = null;
+            if (moveOrdering != null) {
+                moveOrdering.startSearch();
+            }
+            final boolean player = game.currentPlayer() == 0;
+            double value = 0;
+            try {
+                for (int depth = depthStart + 1; depth < depthMax + 1; depth++) {
+                    if (aspirationWindow > 0 && depthReached > 0) {
+                        value = aspirationSearch(game, generator, depth, player, value);
+                    } else {
+                        value = negamax(game, generator, depth, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, player, null);
+                    }
+                    if (principalVariationLength[0] > 0) {
+                        best = (M) principalVariation[0][0];
+                        depthReached = depth;
+                        // The principal variation of this depth is the killer of the next one
+                        for (int ply = 0; ply < killers.length; ply++) {
+                            killers[ply] = ply < principalVariationLength[0] ? principalVariation[0][ply] : null;
+                        }
+                    }
+                }
+            } catch (TimeoutException e) {
+                // Expected, we just reach a timeout.
+            }
+        }
 
-        // killer first
-        if (previousAnalysisBest != null && generatedMoves.contains(previousAnalysisBest.getMove())) {
-            orderedMoves = new ArrayList<>();
-            final M killerMove = generatedMoves.remove(generatedMoves.indexOf(previousAnalysisBest.getMove()));
-            orderedMoves.add(killerMove);
-            orderedMoves.addAll(generatedMoves);
-        } else {
-            orderedMoves = generatedMoves;
+        private double aspirationSearch(G game, IMoveGenerator<M, G> generator, int depth, boolean player, double previousValue)
+                throws TimeoutException {
+            double delta = aspirationWindow;
+            double alpha = previousValue - delta;
+            double beta = previousValue + delta;
+            while (true) {
+                final double value = negamax(game, generator, depth, 0, alpha, beta, player, null);
+                if (value <= alpha && alpha > Double.NEGATIVE_INFINITY) {
+                    delta *= 2;
+                    alpha = value - delta;
+                } else if (value >= beta && beta < Double.POSITIVE_INFINITY) {
+                    delta *= 2;
+                    beta = value + delta;
+                } else {
+                    return value;
+                }
+            }
         }
 
-        for (final M move : orderedMoves) {
+        private void timeCheck() throws TimeoutException {
             timer.timeCheck();
-            final G movedGame = move.execute(game);
-            MinMaxEvaluatedMove child = null;
-            try {
-                final MinMaxEvaluatedMove bestSubChild = minimax(movedGame, generator, depth - 1, alpha, beta, !player, previousAnalysisBest == null ? null
-                        : previousAnalysisBest.getBestSubMove());
-                child = new MinMaxEvaluatedMove(move, bestSubChild.getValue(), bestSubChild);
-            } catch (final AlphaBetaPrunningException e) {
-                game = move.cancel(movedGame);
-            }
-            if (child != null) {
-                // Alpha beta prunning
-                if (alphaBetaAtThisLevel) {
-                    if (player) {
-                        alpha = Math.max(alpha, child.getValue());
-                        if (beta <= alpha) {
-                            game = move.cancel(movedGame);
-                            throw new AlphaBetaPrunningException();
+            if (helper && stopHelpers) {
+                throw new TimeoutException();
+            }
+        }
+
+        private void allocate(int depthMax) {
+            if (killers.length < depthMax + 1) {
+                principalVariation = new Object[depthMax + 2][depthMax + 1];
+                principalVariationLength = new int[depthMax + 2];
+                killers = new Object[depthMax + 1];
+            }
+            while (moveBuffers.size() < depthMax + 1) {
+                moveBuffers.add(new MoveBuffer<>());
+            }
+        }
+
+        private double negamax(G game, IMoveGenerator<M, G> generator, int depth, int ply, double alpha, double beta, boolean player, M previousMove)
+                throws TimeoutException {
+            nodes++;
+            principalVariationLength[ply] = ply;
+            if (depth == 0) {
+                if (noisyMoveGenerator != null) {
+                    return quiescence(game, ply, quiescenceDepth, alpha, beta, player);
+                }
+                return evaluate(game, depth, player, evaluation);// Evaluated game status
+            }
+            long hash = 0;
+            M hashMove = null;
+            if (transpositionTable != null) {
+                hash = ((IHashableGame) game).hash();
+                if (transpositionTable.probe(hash, entry)) {
+                    hashMove = entry.move;
+                    // At the root we always search so that we know the move to play
+                    if (ply > 0 && entry.depth >= depth) {
+                        final double value = entry.value;
+                        final byte bound = entry.bound;
+                        if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER_BOUND && value >= beta)
+                                || (bound == TranspositionTable.UPPER_BOUND && value <= alpha)) {
+                            return value;
                         }
-                    } else {
-                        beta = Math.min(beta, child.getValue());
-                        if (beta <= alpha) {
-                            game = move.cancel(movedGame);
-                            throw new AlphaBetaPrunningException();
+                    }
+                }
+            }
+            if (nullMoveGenerator != null && ply > 0 && previousMove != null && !verifyingNullMove && depth > 1 && beta < Double.POSITIVE_INFINITY) {
+                final double value = nullMoveSearch(game, generator, depth, ply, beta, player, previousMove);
+                if (value >= beta) {
+                    return value;
+                }
+                principalVariationLength[ply] = ply;
+            }
+            final MoveBuffer<M> moves = moveBuffers.get(ply);
+            moves.clear();
+            generator.generateMoves(game, moves);
+            if (moves.isEmpty()) {
+                final double value = evaluate(game, depth, player, evaluation);
+                store(hash, depth, TranspositionTable.EXACT, value, null);
+                return value;// Real end game status
+            }
+            // killer first, or the best move found the last time this game state has been searched
+            int firstMoveIndex = killers.length > ply && killers[ply] != null ? moves.indexOf(killers[ply]) : -1;
+            if (firstMoveIndex < 0 && hashMove != null) {
+                firstMoveIndex = moves.indexOf(hashMove);
+            }
+            if (firstMoveIndex > 0) {
+                moves.moveToFront(firstMoveIndex);
+            }
+            if (moveOrdering != null) {
+                moveOrdering.order(moves, firstMoveIndex >= 0 ? 1 : 0, ply, previousMove);
+            }
+
+            final double originalAlpha = alpha;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            M bestMove = null;
+            for (int i = 0; i < moves.size(); i++) {
+                timeCheck();
+                final M move = moves.get(i);
+                final G movedGame = move.execute(game);
+                double value = Double.POSITIVE_INFINITY;
+                try {
+                    if (lateMoveReduction > 0 && i >= movesBeforeReduction && depth > 2 && alpha > Double.NEGATIVE_INFINITY) {
+                        // Late move: prove with a reduced depth that it is not better than the best one so far
+                        final int reducedDepth = Math.max(1, depth - 1 - lateMoveReduction);
+                        value = -negamax(movedGame, generator, reducedDepth, ply + 1, -Math.nextUp(alpha), -alpha, !player, move);
+                    }
+                    // Search with the full depth unless the reduced search proved the move is not better
+                    if (value > alpha) {
+                        if (principalVariationSearch && i > 0 && depth > 1 && alpha > Double.NEGATIVE_INFINITY) {
+                            // Null window: only prove the move is not better than the best one so far
+                            value = -negamax(movedGame, generator, depth - 1, ply + 1, -Math.nextUp(alpha), -alpha, !player, move);
+                            if (value > alpha && value < beta) {
+                                // It is better: search it again with the full window to know its exact value
+                                value = -negamax(movedGame, generator, depth - 1, ply + 1, -beta, -alpha, !player, move);
+                            }
+                        } else {
+                            value = -negamax(movedGame, generator, depth - 1, ply + 1, -beta, -alpha, !player, move);
+                        }
+                    }
+                } finally {
+                    game = move.cancel(movedGame);
+                }
+                if (ply == 0 && !helper && Constants.TRACES) {
+                    System.err.println("Move " + move + ": " + (player ? value : -value));
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestMove = move;
+                    if (value > alpha) {
+                        alpha = value;
+                        updatePrincipalVariation(ply, move);
+                        if (alpha >= beta) {
+                            // Alpha beta prunning
+                            if (moveOrdering != null) {
+                                moveOrdering.cutoff(move, ply, depth, previousMove);
+                            }
+                            break;
                         }
                     }
                 }
-                moves.add(child);
-                game = move.cancel(movedGame);
+            }
+            if (bestValue <= originalAlpha) {
+                store(hash, depth, TranspositionTable.UPPER_BOUND, bestValue, bestMove);
+            } else if (bestValue >= beta) {
+                store(hash, depth, TranspositionTable.LOWER_BOUND, bestValue, bestMove);
+            } else {
+                store(hash, depth, TranspositionTable.EXACT, bestValue, bestMove);
+            }
+            return bestValue;
+        }
+
+        /**
+         * @return a value greater or equal to beta if the game state can be pruned, a lower value otherwise
+         */
+        private double nullMoveSearch(G game, IMoveGenerator<M, G> generator, int depth, int ply, double beta, boolean player, M previousMove)
+                throws TimeoutException {
+            final M nullMove = nullMoveGenerator.generateNullMove(game);
+            if (nullMove == null) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            final int reducedDepth = Math.max(0, depth - 1 - nullMoveReduction);
+            final G passedGame = nullMove.execute(game);
+            double value;
+            try {
+                // Previous move is null so that the opponent does not pass his turn too
+                value = -negamax(passedGame, generator, reducedDepth, ply + 1, -beta, -Math.nextDown(beta), !player, null);
+            } finally {
+                game = nullMove.cancel(passedGame);
+            }
+            if (value < beta) {
+                return value;
+            }
+            // Verify with the real moves, without null moves, in case passing the turn is an advantage in this game state
+            verifyingNullMove = true;
+            try {
+                return negamax(game, generator, Math.max(1, depth - nullMoveReduction), ply, Math.nextDown(beta), beta, player, previousMove);
+            } finally {
+                verifyingNullMove = false;
             }
         }
-        return moves;
-    }
 
-    private MinMaxEvaluatedMove minimax(G game, IMoveGenerator<M, G> generator, int depth, double alpha, double beta, boolean player,
-            MinMaxEvaluatedMove previousAnalysisBest) throws AlphaBetaPrunningException, TimeoutException {
-        if (depth == 0) {
-            return new MinMaxEvaluatedMove(null, scoreFromEvaluatedGame(game.evaluate(depth)), null);// Evaluated game status
+        private double quiescence(G game, int ply, int depth, double alpha, double beta, boolean player) throws TimeoutException {
+            nodes++;
+            principalVariationLength[ply] = ply;
+            // The player can always keep the current game state instead of playing a noisy move
+            final double standPat = evaluate(game, 0, player, evaluation);
+            if (depth == 0 || standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            double bestValue = standPat;
+            final MoveBuffer<M> moves = moveBuffers.get(ply);
+            moves.clear();
+            noisyMoveGenerator.generateNoisyMoves(game, moves);
+            for (int i = 0; i < moves.size(); i++) {
+                timeCheck();
+                final M move = moves.get(i);
+                final G movedGame = move.execute(game);
+                double value;
+                try {
+                    value = -quiescence(movedGame, ply + 1, depth - 1, -beta, -alpha, !player);
+                } finally {
+                    game = move.cancel(movedGame);
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return bestValue;
         }
-        final List<MinMaxEvaluatedMove> moves = evaluateSubPossibilities(game, generator, depth, alpha, beta, player, true, previousAnalysisBest);
-        if (!moves.isEmpty()) {
-            Collections.sort(moves);
-            if (depth == depthmax && Constants.TRACES) {
-                System.err.println("Moves:" + moves);
+
+        private void updatePrincipalVariation(int ply, M move) {
+            final Object[] line = principalVariation[ply];
+            final Object[] subLine = principalVariation[ply + 1];
+            line[ply] = move;
+            final int length = principalVariationLength[ply + 1];
+            for (int i = ply + 1; i < length; i++) {
+                line[i] = subLine[i];
             }
-            return moves.get(player ? (moves.size() - 1) : 0);
-        } else {
-            return new MinMaxEvaluatedMove(null, scoreFromEvaluatedGame(game.evaluate(depth)), null);// Real end game status
+            principalVariationLength[ply] = Math.max(length, ply + 1);
+        }
+    }
+
+    private void store(long hash, int depth, byte bound, double value, M move) {
+        if (transpositionTable != null) {
+            transpositionTable.store(hash, depth, bound, value, move);
         }
     }
 
@@ -186,26 +529,90 @@ public class Minimax<M extends ICancellableMove<G>, G extends IGame> {
      * @return the best move you can play considering the other player is selecting
      *         the best move for him at each turn
      */
+    @SuppressWarnings("unchecked")
     public M best(final G game, final IMoveGenerator<M, G> generator, int depthStart, int depthMax) {
-    	MinMaxEvaluatedMove best = null;
-    	try {
-        	for (int depth=depthStart+1; depth<depthMax+1; depth++){
-            	try {
-                    this.depthmax = depth;
-                    best = minimax(game, generator, depthmax, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, game.currentPlayer() == 0, killer);
-                    killer = best;
-                } catch (final AlphaBetaPrunningException e) {
-                    // Should never happen
-                    throw new RuntimeException("evaluated move found with value not between + infinity and - infinity...");
-                }
+        if (transpositionTable != null && !(game instanceof IHashableGame)) {
+            throw new IllegalArgumentException("A transposition table requires the game state to implement IHashableGame");
+        }
+        if (searchers.size() > 1 && !(game instanceof ICopyableGame)) {
+            throw new IllegalArgumentException("Searching on several threads requires the game state to implement ICopyableGame");
+        }
+        final List<Future<?>> helpers = new ArrayList<>();
+        stopHelpers = false;
+        for (int i = 1; i < searchers.size(); i++) {
+            final Searcher helper = searchers.get(i);
+            final G copy = ((ICopyableGame<G>) game).copy();
+            // Half of the helpers search one depth ahead so that the threads do not all explore the same game states
+            final int helperDepthStart = depthStart + i % 2;
+            helpers.add(executor().submit(() -> helper.iterativeDeepening(copy, generator, helperDepthStart, depthMax)));
+        }
+        searchers.get(0).iterativeDeepening(game, generator, depthStart, depthMax);
+        stopHelpers = true;
+        for (final Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        Searcher deepest = searchers.get(0);
+        for (final Searcher searcher : searchers) {
+            if (searcher.depthReached > deepest.depthReached) {
+                deepest = searcher;
             }
-		} catch (TimeoutException e) {
-			//Expected, we just reach a timeout.
-		}
-        if (best==null){
-        	return null;
         }
-        return best.getMove();
+        return deepest.best;
+    }
+
+    /**
+     * @return the total count of game states explored by the last search, all threads included. Useful for performances stats :)
+     */
+    public long nodes() {
+        long nodes = 0;
+        for (final Searcher searcher : searchers) {
+            nodes += searcher.nodes;
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the deepest depth fully searched by the last search, whatever the thread
+     */
+    public int depthReached() {
+        int depthReached = 0;
+        for (final Searcher searcher : searchers) {
+            depthReached = Math.max(depthReached, searcher.depthReached);
+        }
+        return depthReached;
+    }
+
+    /**
+     * Stop the helper threads. The next search on several threads starts new ones.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(searchers.size() - 1, runnable -> {
+                final Thread thread = new Thread(runnable, "minimax-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private double evaluate(G game, int depth, boolean player, double[] evaluation) {
+        game.evaluate(depth, evaluation);
+        final double score = scoreFromEvaluatedGame(evaluation);
+        return player ? score : -score;
     }
 
     private double scoreFromEvaluatedGame(double[] scores) {
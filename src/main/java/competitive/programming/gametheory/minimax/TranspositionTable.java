@@ -0,0 +1,100 @@
+package competitive.programming.gametheory.minimax;
+
+/**
+ * @author Manwe
+ *
+ *         Fixed size transposition table used by the Minimax to remember the result of the game states it already explored.
+ *         All the entries are preallocated in primitive arrays at construction so that storing a result does not create any garbage during the search.
+ *
+ *         Each entry keeps the depth at which the game state has been searched, the type of bound the value represents and the best move found.
+ *         When two game states share the same slot, the newest one replaces the oldest.
+ *
+ *         The table can be shared by several search threads without any lock: the stored key is xored with the content of the entry,
+ *         so an entry partially overwritten by another thread no longer matches its key and is simply considered as missing.
+ *         The best move is not part of this check, it is only used to order the moves and must be looked for in the generated moves.
+ *
+ * @param <M>
+ *            The class that model a move in the game tree
+ */
+class TranspositionTable<M> {
+    static final byte EXACT = 1;
+    static final byte LOWER_BOUND = 2;
+    static final byte UPPER_BOUND = 3;
+
+    /**
+     * Copy of an entry, so that it can not be modified by another thread while it is used
+     */
+    static class Entry<M> {
+        int depth;
+        byte bound;
+        double value;
+        M move;
+    }
+
+    private final int mask;
+    private final long[] keys;
+    private final int[] datas;
+    private final double[] values;
+    private final Object[] moves;
+
+    /**
+     * @param size
+     *            the minimum number of entries of the table. It is rounded up to the next power of two.
+     */
+    TranspositionTable(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Transposition table size must be strictly positive");
+        }
+        final int capacity = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        mask = capacity - 1;
+        keys = new long[capacity];
+        datas = new int[capacity];
+        values = new double[capacity];
+        moves = new Object[capacity];
+    }
+
+    /**
+     * @param key
+     *            the hash of the game state
+     * @param entry
+     *            filled with the stored entry when the game state is found
+     * @return true if the game state is stored
+     */
+    @SuppressWarnings("unchecked")
+    boolean probe(long key, Entry<M> entry) {
+        final int slot = slot(key);
+        final int data = datas[slot];
+        final double value = values[slot];
+        final M move = (M) moves[slot];
+        if (data == 0 || (keys[slot] ^ check(data, value)) != key) {
+            return false;
+        }
+        entry.depth = data >>> 2;
+        entry.bound = (byte) (data & 3);
+        entry.value = value;
+        entry.move = move;
+        return true;
+    }
+
+    void store(long key, int depth, byte bound, double value, M move) {
+        final int slot = slot(key);
+        final int storedData = datas[slot];
+        if (storedData != 0 && (keys[slot] ^ check(storedData, values[slot])) == key && (storedData >>> 2) > depth) {
+            // Keep the deeper analysis of the same game state
+            return;
+        }
+        final int data = depth << 2 | bound;
+        datas[slot] = data;
+        values[slot] = value;
+        moves[slot] = move;
+        keys[slot] = key ^ check(data, value);
+    }
+
+    private static long check(int data, double value) {
+        return Double.doubleToRawLongBits(value) ^ ((long) data << 32 | data);
+    }
+
+    private int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
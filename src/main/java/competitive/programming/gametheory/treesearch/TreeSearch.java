@@ -1,18 +1,27 @@
 package competitive.programming.gametheory.treesearch;
 
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
 
+import competitive.programming.containers.IndexedHeap;
+import competitive.programming.gametheory.IBatchEvaluator;
 import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IHashableGame;
 import competitive.programming.gametheory.IMove;
 import competitive.programming.gametheory.IMoveGenerator;
+import competitive.programming.gametheory.MoveBuffer;
 import competitive.programming.gametheory.common.IScoreConverter;
 import competitive.programming.gametheory.common.TreeNode;
-import competitive.programming.gametheory.common.TreeNodeSorter;
 import competitive.programming.timemanagement.TimeoutException;
 import competitive.programming.timemanagement.Timer;
 
@@ -33,6 +42,10 @@ import competitive.programming.timemanagement.Timer;
  *
  *         In order to fine tunes the way the game tree is explored, you have a depthPenaltyFactor parameter that will allow you to get deeper or explore wider the tree.
  *
+ *         The nodes are not objects but indexes in preallocated primitive arrays, reused from one search to the next,
+ *         so that growing big trees does not trigger the garbage collector. The frontier of the nodes to be expanded is an indexed heap
+ *         of node indexes.
+ *
  *   Warning:
  *         When you apply a move, you MUST return a new instance of the game because of the fact any node might be explored at next exploration
  *
@@ -46,68 +59,129 @@ import competitive.programming.timemanagement.Timer;
  *            The class that model the Game state
  */
 public class TreeSearch<M extends IMove<G>, G extends IGame> {
+    private static final int NONE = TreeSearchNodeStore.NONE;
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    // Priorities are rebased before the depth penalty power gets too far from 1
+    private static final int PRIORITY_REBASE_DEPTH = 32;
+
     private final Timer timer;
     private final double depthPenaltyFactor;
-    private final TreeNodeSorter<M, G> sorter;
-    private final PriorityQueue<TreeSearchNode<M, G>> toBeExpanded;
-	private int evaluationsPerformed;
+    private final IScoreConverter converter;
+    private IBatchEvaluator<G> batchEvaluator;
+    private final TreeSearchNodeStore nodes;
+    private final IndexedHeap toBeExpanded;
+    private final AtomicInteger evaluationsPerformed = new AtomicInteger();
     private int evaluationsMax = 0;
-    private List<TreeSearchNode<M, G>> rootNodes;
-    private TreeSearchNode<M, G> best;
+    private int nodesMax = 0;
+    private final IndexedHeap fringe = new IndexedHeap(64);
+    // true when nodes have been collapsed: they are expanded again by the next search only, so that each search ends
+    private boolean collapsedNodes;
+    private int best = NONE;
+    // Depths are absolute: the game tree root of the first search is at depth 0, and the current root at rootDepth
+    private int root = NONE;
+    private int rootDepth;
+    // Priorities are evaluations multiplied by depthPenaltyFactor power (depth - priorityDepth)
+    private int priorityDepth;
+    // true when the store and the frontier contain nodes that are no longer under the root
+    private boolean pruned;
+    private boolean mergeTranspositions;
+    // Only the transpositions under the root are merged, the pruned nodes will be removed
+    private final IntPredicate live = node -> !pruned || isUnderRoot(node);
+    private int[] propagation = new int[64];
+    private int[] ancestors = new int[64];
+    private int[] marks = new int[0];
+    private int mark;
+    // Multi-threaded search: the tree and the frontier are only accessed while holding the lock, expansions are evaluated outside of it
+    private final Object lock = new Object();
+    private final List<Expansion> expansions = new ArrayList<>();
+    private ExecutorService executor;
+    private int expansionsInFlight;
+    private boolean stopWorkers;
+    private boolean timedOut;
+    // Pondering: the search runs in a background thread without time limit, until stopPondering is called
+    private Thread ponderer;
+    private volatile boolean pondering;
+    private volatile boolean ponderingStopped;
+    private RuntimeException ponderingFailure;
 
-    static class TreeSearchNode<M, G extends IGame> extends TreeNode<M, G> {
-        private TreeSearchNode<M, G> father;
-        private double[] subTreeValue;
-        private final double depthPenaltyFactor;
-        double eval;
-        private List<TreeSearchNode<M, G>> subNodes;
+    /**
+     * The sub nodes of a node being expanded, evaluated before being added to the tree. One per thread, reused from one expansion to the next.
+     */
+    private class Expansion {
+        private int node;
+        private G game;
+        private int depth;
+        private int fatherPlayer;
+        private int evaluationDepth;
+        private int priorityExponent;
+        // the moves of the node, as generated
+        private final MoveBuffer<M> generatedMoves = new MoveBuffer<>();
+        private final List<M> moves = new ArrayList<>();
+        private final List<G> games = new ArrayList<>();
+        private final List<double[]> evaluations = new ArrayList<>();
+        private int[] players = new int[16];
+        private double[] priorities = new double[16];
+        private double[] values = new double[16];
+        private long[] hashes = new long[16];
+        // the node already in the tree with the same game state, or NONE
+        private int[] transpositions = new int[16];
+        private final List<G> batch = new ArrayList<>();
+        // evaluations of the sub nodes, reused from one expansion to the next
+        private double[][] evaluationRows = new double[0][];
 
-        public TreeSearchNode(double[] evaluation, M move, G game, int depth, TreeSearchNode<M, G> father, double depthPenaltyFactor, double eval) {
-            super(evaluation, move, game, depth);
-            this.father = father;
-            this.depthPenaltyFactor = depthPenaltyFactor;
-            subTreeValue = evaluation;
-            this.eval = eval*Math.pow(depthPenaltyFactor, depth);
+        void prepare(int node) {
+            this.node = node;
+            game = game(node);
+            depth = nodes.depths[node] + 1;
+            fatherPlayer = nodes.currentPlayers[node];
+            evaluationDepth = depth - rootDepth;
+            priorityExponent = depth - priorityDepth;
+            generatedMoves.clear();
+            moves.clear();
+            games.clear();
+            evaluations.clear();
         }
 
-        @Override
-        public String toString() {
-            return "TreeSearchNode{subTree:" + Arrays.toString(subTreeValue)+ ",Evaluation="+Arrays.toString(getEvaluation()) +",Eval:"+eval+",Player:"+ getGame().currentPlayer()+ ",Move=" + getMove().toString() + ", depth=" + getDepth() + "}";
+        void add(M move, G newGame, long hash, int transposition) {
+            final int index = moves.size();
+            if (index == players.length) {
+                players = Arrays.copyOf(players, index * 2);
+                priorities = Arrays.copyOf(priorities, index * 2);
+                values = Arrays.copyOf(values, index * 2);
+                hashes = Arrays.copyOf(hashes, index * 2);
+                transpositions = Arrays.copyOf(transpositions, index * 2);
+            }
+            moves.add(move);
+            games.add(newGame);
+            evaluations.add(null);
+            hashes[index] = hash;
+            transpositions[index] = transposition;
         }
 
-        public void backPropagate(double[] subNodeValue, TreeNodeSorter<M, G> sorter, boolean backPropagateToFather) {
-            if (subTreeValue==null || sorter.isBetter(subNodeValue, 1.0, getGame().currentPlayer(), subTreeValue, 1.0, getGame().currentPlayer())) {
-                subTreeValue = subNodeValue;
-                if (father != null && backPropagateToFather) {
-                    father.backPropagate(subNodeValue, sorter, backPropagateToFather);
-                }
-            }
+        void evaluated(int index, double[] evaluation) {
+            final int player = games.get(index).currentPlayer();
+            evaluations.set(index, evaluation);
+            players[index] = player;
+            priorities[index] = converter.convert(evaluation, player) * Math.pow(depthPenaltyFactor, priorityExponent);
+            values[index] = converter.convert(evaluation, fatherPlayer);
         }
-        
-        @Override 
-        public void decrementDepth() {
-        	super.decrementDepth();
-        	eval *= Math.pow(depthPenaltyFactor, getDepth())/Math.pow(depthPenaltyFactor, getDepth()+1);
-        };
 
-        public void setSubNodes(List<TreeSearchNode<M, G>> subNodes) {
-            this.subNodes = subNodes;
+        double[][] evaluationRows(int count, int players) {
+            if (evaluationRows.length < count || evaluationRows[0].length != players) {
+                // The rows already filled are kept by the evaluations list
+                evaluationRows = new double[Math.max(count, evaluationRows.length * 2)][players];
+            }
+            return evaluationRows;
         }
+    }
 
-		public void resetEvaluation(TreeNodeSorter<M, G> sorter) {
-			boolean resetFather = false;
-			
-			if (father!=null && Arrays.equals(father.subTreeValue, subTreeValue)){
-				resetFather = true;
-			}
-			subTreeValue = null;
-			for (TreeSearchNode<M,G> subNode : subNodes){
-				backPropagate(subNode.subTreeValue, sorter, !resetFather);
-			}
-			if (resetFather){
-				father.resetEvaluation(sorter);
-			}
-		}
+    /**
+     * Copy of a node of the tree, for testing purpose
+     */
+    static class TreeSearchNode<M, G> extends TreeNode<M, G> {
+        TreeSearchNode(double[] evaluation, M move, G game, int depth) {
+            super(evaluation, move, game, depth);
+        }
     }
 
     /**
@@ -126,10 +200,104 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
      *            are taking into consideration other players scores.
      */
     public TreeSearch(Timer timer, double depthPenaltyFactor, IScoreConverter converter) {
+        this(timer, depthPenaltyFactor, converter, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new Tree Search with a preallocated node storage.
+     *
+     * Hint: allocate as many nodes as you expect to explore in a turn, so that the storage never grows during the game.
+     *
+     * @param timer
+     *            timer instance in order to interrupt the search of the best move
+     *            if we are running out of time
+     * @param depthPenaltyFactor
+     *            Configure if the search should favor deeper search or wider search.
+     *            for each depth, the evaluation is multiplied by depthPenaltyFactor power depth.
+     * @param converter
+     *            A score converter is used so we can configure how the players
+     *            are taking into consideration other players scores.
+     * @param nodesCapacity
+     *            the number of nodes allocated at construction. The storage grows if more nodes are needed
+     */
+    public TreeSearch(Timer timer, double depthPenaltyFactor, IScoreConverter converter, int nodesCapacity) {
         this.timer = timer;
         this.depthPenaltyFactor = depthPenaltyFactor;
-        this.sorter = new TreeNodeSorter<>(converter);
-        this.toBeExpanded = createToBeExpanded();
+        this.converter = converter;
+        this.nodes = new TreeSearchNodeStore(nodesCapacity);
+        this.toBeExpanded = new IndexedHeap(nodesCapacity);
+        this.expansions.add(new Expansion());
+    }
+
+    /**
+     * Expand the game tree on several threads. Each thread takes the most promising node of the frontier, and executes the moves and evaluates
+     * the game states outside of any lock, so that your code runs in parallel. A node being expanded is marked so that no other thread expands it.
+     * Adding the sub nodes to the tree and backpropagating their values is done while holding a lock: it is cheap compared to the evaluations.
+     * With one thread, the search runs in the calling thread exactly as without this option.
+     *
+     * Hint: the move generator, the moves, the evaluation of your game states and the score converter are called by several threads at the same time.
+     *       They must not share any mutable state.
+     * Hint: the nodes are not expanded in the exact priority order anymore, so two searches with the same evaluation limit can return different moves.
+     * Hint: call shutdown once the TreeSearch is not used anymore, to stop the helper threads.
+     *
+     * @param threads
+     *            the number of threads expanding the game tree, including the one calling best or continueBest
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required to search");
+        }
+        while (expansions.size() > threads) {
+            expansions.remove(expansions.size() - 1);
+        }
+        while (expansions.size() < threads) {
+            expansions.add(new Expansion());
+        }
+        stopHelpers();
+    }
+
+    /**
+     * Stop the helper threads expanding the game tree. The next search on several threads starts new ones.
+     */
+    public void shutdown() {
+        checkNotPondering();
+        stopHelpers();
+    }
+
+    private void stopHelpers() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Evaluate the sub nodes of a node all together instead of one by one. Without batch evaluator, each game state is evaluated by IGame.evaluate.
+     *
+     * Hint: with several threads, the batch evaluator is called by all of them at the same time.
+     *
+     * @param batchEvaluator
+     *            the evaluator of the sub nodes of a node, null to evaluate them one by one
+     */
+    public void setBatchEvaluator(IBatchEvaluator<G> batchEvaluator) {
+        this.batchEvaluator = batchEvaluator;
+    }
+
+    /**
+     * Merge the transpositions: when a move leads to a game state already in the tree at the same depth, through another sequence of moves,
+     * the node is shared instead of being evaluated and expanded again. The game tree becomes a directed acyclic graph whose nodes can have
+     * several fathers, and the value of a shared node is backpropagated to all of them.
+     * When the same positions are reached in many orders, it saves most of the evaluations.
+     * It takes effect at the next call to best.
+     *
+     * Hint: your game states must implement IHashableGame, and equals must tell whether two game states are the same.
+     * Hint: only merge game states whose future does not depend on how they were reached.
+     *
+     * @param mergeTranspositions
+     *            true to merge the identical game states found at the same depth
+     */
+    public void setTranspositions(boolean mergeTranspositions) {
+        this.mergeTranspositions = mergeTranspositions;
     }
 
     /**
@@ -142,27 +310,42 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
      *         the best move for them
      */
     public M best(final G game, final IMoveGenerator<M, G> generator) {
+        checkNotPondering();
+        if (mergeTranspositions && !(game instanceof IHashableGame)) {
+            throw new IllegalArgumentException("Merging the transpositions requires game states implementing IHashableGame");
+        }
         toBeExpanded.clear();
-        evaluationsPerformed = 0;
-        rootNodes = new ArrayList<>();
+        evaluationsPerformed.set(0);
+        rootDepth = 0;
+        priorityDepth = 0;
+        pruned = false;
+        collapsedNodes = false;
+        final double[] eval = game.evaluate(0);
+        nodes.clear(eval.length);
+        nodes.setTranspositions(mergeTranspositions);
+        root = nodes.addNode(eval, game, game.currentPlayer(), 0, converter.convert(eval, game.currentPlayer()), hash(game));
         try {
-        	double[] eval = game.evaluate(0);
-            TreeSearchNode<M, G> root = new TreeSearchNode<>(eval, null, game, 0, null, depthPenaltyFactor, sorter.converter.convert(eval, game.currentPlayer()));
-            rootNodes = expansion(root, generator);
-            root.setSubNodes(rootNodes);
+            expansion(root, generator);
             treeSearchLoop(generator);
         } catch (TimeoutException e) {
             // Times up!
         }
 
-        return returnCurrentBest(game.currentPlayer());
+        return returnCurrentBest();
     }
 
 	/**
 	 * For testing purpose
 	 * */
     protected Queue<TreeSearchNode<M, G>> getToBeExpanded() {
-		return toBeExpanded;
+        final Queue<TreeSearchNode<M, G>> copy = new ArrayDeque<>();
+        for (int i = 0; i < toBeExpanded.size(); i++) {
+            final int node = toBeExpanded.get(i);
+            if (isUnderRoot(node)) {
+                copy.add(new TreeSearchNode<>(nodes.evaluationCopy(node), move(nodes.firstIncomingEdges[node]), game(node), nodes.depths[node] - rootDepth));
+            }
+        }
+		return copy;
 	}
     
     /**
@@ -173,9 +356,9 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
      * 		  A print stream such as System.err for example
      */
     public void print(PrintStream out) {
-        if (rootNodes != null) {
-            for (TreeSearchNode<M, G> node : rootNodes) {
-                printNode(node, out);
+        if (root != NONE && nodes.edgeCounts[root] > 0) {
+            for (int edge = nodes.firstEdges[root]; edge < nodes.firstEdges[root] + nodes.edgeCounts[root]; edge++) {
+                printNode(edge, out);
             }
         }
     }
@@ -185,9 +368,9 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
      *         best method It is mandatory to run best method first!
      */
     public G bestGame() {
-        if (best == null)
+        if (best == NONE)
             return null;
-        return best.getGame();
+        return game(nodes.edgeNodes[best]);
     }
 
     
@@ -200,11 +383,35 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
         this.evaluationsMax = evaluationsMax;
     }
 
+    /**
+     * Bound the memory used by the game tree. When the tree reaches nodesMax nodes, the least promising subtrees are evicted until
+     * it is down to three quarters of nodesMax: an expanded node whose sub nodes are all leaves and have the lowest priorities gets its sub nodes removed.
+     * It keeps the value backed up from them, and will be expanded again by the next search (continueBest or pondering) if it is promising.
+     * So the search can keep running, turn after turn with continueBest, in bounded memory.
+     * An expanded node whose sub nodes are all final states is never evicted, and a search does not expand again the nodes it collapsed:
+     * without time or evaluations limit, the search ends once the nodes it can still expand are exhausted.
+     *
+     * Hint: the tree can exceed nodesMax by the sub nodes of one node, or when the fully explored nodes fill it. The root sub nodes are never evicted.
+     *
+     * @param nodesMax
+     *            the maximum number of nodes kept in the tree. 0 for no limit
+     */
+    public void setNodesMax(int nodesMax) {
+        this.nodesMax = nodesMax;
+    }
+
+    /**
+     * @return the count of nodes currently stored, including the pruned ones not reclaimed yet. Useful for performances stats :)
+     */
+    public int nodes() {
+        return nodes.size;
+    }
+
     /**
      * @return the total count of evaluations performed. Useful for performances stats :)
      */
     public int evaluations() {
-        return evaluationsPerformed;
+        return evaluationsPerformed.get();
     }
 
 	/**
@@ -212,33 +419,44 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
 	 * Use this when you want to keep a part of the tree between several iterations.
 	 * Then call continueBest in order to find the next interesting move.
 	 * 
+	 * It does not walk the kept tree: the removed nodes are dropped from the frontier when they are polled,
+	 * and their memory is reclaimed when the node storage is full.
+	 * 
 	 * @param executedMove 
-	 *        The move that will be your new root of the tree. All the other subtrees will be removed
+	 *        The move that will be your new root of the tree. All the other subtrees will be removed.
+	 *        It is the move returned by the search, or a move equal to it: implement equals in your moves to prun with the move an opponent played.
 	 * @param generator  
 	 *        The move generator
 	 */
 	public void prun(M executedMove, IMoveGenerator<M, G> generator) {
-		TreeSearchNode<M,G> newRoot = null;
-		
-		for (TreeSearchNode<M,G> rootNode: rootNodes){
-			if (rootNode.getMove()==executedMove){
-				newRoot = rootNode;
+		checkNotPondering();
+		int newRoot = NONE;
+		for (int edge = nodes.firstEdges[root]; edge < nodes.firstEdges[root] + nodes.edgeCounts[root]; edge++) {
+			if (nodes.edgeMoves[edge] == executedMove || (newRoot == NONE && executedMove.equals(nodes.edgeMoves[edge]))) {
+				newRoot = nodes.edgeNodes[edge];
 			}
 		}
-		toBeExpanded.clear();
-		best = null;
-		evaluationsPerformed=0;
-		rootNodes = newRoot.subNodes;
-		newRoot.father = null;
-		if (rootNodes==null){
+		if (newRoot == NONE) {
+			throw new IllegalArgumentException("The executed move " + executedMove + " is not a move of the game tree root");
+		}
+		best = NONE;
+		evaluationsPerformed.set(0);
+		nodes.firstIncomingEdges[newRoot] = NONE;
+		root = newRoot;
+		rootDepth = nodes.depths[newRoot];
+		pruned = true;
+		if (rootDepth - priorityDepth >= PRIORITY_REBASE_DEPTH) {
+			compactTree();
+		}
+		if (nodes.edgeCounts[root] == TreeSearchNodeStore.COLLAPSED) {
+			nodes.edgeCounts[root] = NONE;
+		}
+		if (nodes.edgeCounts[root] == NONE) {
 			try {
-				rootNodes = expansion(newRoot, generator);
+				expansion(root, generator);
 			} catch (TimeoutException e) {
 			}
 		}
-		for (TreeSearchNode<M,G> rootNode: rootNodes){
-			repushToBeExpandedNodes(rootNode);
-		}
 	}
 	
 	/**
@@ -251,103 +469,607 @@ public class TreeSearch<M extends IMove<G>, G extends IGame> {
      * @throws TimeoutException
      */
     public M continueBest(IMoveGenerator<M, G> generator) {
-		evaluationsPerformed=0;
+		checkNotPondering();
+		evaluationsPerformed.set(0);
 		try {
 			treeSearchLoop(generator);
 		} catch (TimeoutException e) {
 			//Time out
 		}
-		return returnCurrentBest(rootNodes.get(0).father.getGame().currentPlayer());
+		return returnCurrentBest();
 	}
 
     
+    /**
+     * Keep expanding the game tree in a background thread while your opponents are playing, instead of waiting for their moves.
+     * The pondering runs without time limit until stopPondering is called, then prun the tree with the move actually played:
+     * the part of the tree explored under it is kept and continueBest starts from there.
+     * The timer is not checked while pondering, so the time limit of your next turn is not affected.
+     *
+     * Hint: call it once your move is sent, after best or continueBest and prun with your move.
+     * Hint: set nodesMax so that the tree does not run out of memory when the opponents think for long.
+     * Hint: the evaluations limit still applies, the pondering stops by itself when it is reached or when the whole tree is explored.
+     * Warning: no other method must be called until stopPondering.
+     *
+     * @param generator
+     *            The move generator that will generate all the possible move of
+     *            the playing player at each turn
+     */
+    public void startPondering(final IMoveGenerator<M, G> generator) {
+        checkNotPondering();
+        if (root == NONE) {
+            throw new IllegalStateException("There is no game tree to ponder, call best first");
+        }
+        evaluationsPerformed.set(0);
+        ponderingFailure = null;
+        ponderingStopped = false;
+        pondering = true;
+        ponderer = new Thread(() -> {
+            try {
+                treeSearchLoop(generator);
+            } catch (TimeoutException e) {
+                // Pondering stopped
+            } catch (RuntimeException e) {
+                ponderingFailure = e;
+            }
+        }, "tree-search-ponder");
+        ponderer.setDaemon(true);
+        ponderer.start();
+    }
+
+    /**
+     * Stop the pondering started by startPondering and wait for the background thread to end. Does nothing if the search is not pondering.
+     */
+    public void stopPondering() {
+        if (ponderer == null) {
+            return;
+        }
+        ponderingStopped = true;
+        boolean interrupted = false;
+        while (ponderer.isAlive()) {
+            try {
+                ponderer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        ponderer = null;
+        pondering = false;
+        if (ponderingFailure != null) {
+            final RuntimeException failure = ponderingFailure;
+            ponderingFailure = null;
+            throw failure;
+        }
+    }
+
 	/**
 	 * @return the double [] of the best evaluation so far.
 	 */
 	public double[] bestEval() {
-		return best.subTreeValue;
+		if (best == NONE)
+			return null;
+		return nodes.evaluationCopy(nodes.valueNodes[nodes.edgeNodes[best]]);
 	}
 
-	private PriorityQueue<TreeSearchNode<M, G>> createToBeExpanded() {
-		return new PriorityQueue<>((o1, o2)->Double.compare(o2.eval, o1.eval));
-	}
+    private void expansion(int toExpand, IMoveGenerator<M, G> generator) throws TimeoutException {
+        final Expansion expansion = expansions.get(0);
+        expansion.prepare(toExpand);
+        evaluateSubNodes(expansion, generator);
+        commit(expansion);
+    }
 
-    private List<TreeSearchNode<M, G>> expansion(TreeSearchNode<M, G> toExpand, IMoveGenerator<M, G> generator) throws TimeoutException {
-        int depth = toExpand.getDepth();
-        G game = toExpand.getGame();
-        List<TreeSearchNode<M, G>> subNodes = new ArrayList<>();
-        List<M> moves = generator.generateMoves(game);
-        for (M move : moves) {
-            TreeSearchNode<M, G> node = evaluate(move.execute(game), move, depth + 1, toExpand);
-			subNodes.add(node);
-			pushInToBeExpanded(node);	
+    /**
+     * Execute the moves of the node being expanded and evaluate the game states. It does not access the tree, so it can run outside of the lock.
+     */
+    private void evaluateSubNodes(Expansion expansion, IMoveGenerator<M, G> generator) throws TimeoutException {
+        final G game = expansion.game;
+        final MoveBuffer<M> generatedMoves = expansion.generatedMoves;
+        generator.generateMoves(game, generatedMoves);
+        for (int i = 0; i < generatedMoves.size(); i++) {
+            final M move = generatedMoves.get(i);
+            final G newNodeState = move.execute(game);
+            if (newNodeState == game) {
+                throw new IllegalArgumentException(
+                        "Your game state is not duplicated! Tree search require to duplicate the game state since it will explore the tree incrementally");
+            }
+            final long hash = hash(newNodeState);
+            if (mergeTranspositions) {
+                final int transposition;
+                synchronized (lock) {
+                    transposition = nodes.findTransposition(hash, expansion.depth, newNodeState, live);
+                }
+                if (transposition != NONE) {
+                    // Already evaluated through another sequence of moves
+                    expansion.add(move, newNodeState, hash, transposition);
+                    continue;
+                }
+            }
+            expansion.add(move, newNodeState, hash, NONE);
+            if (batchEvaluator == null) {
+                countEvaluations(1);
+                final int index = expansion.moves.size() - 1;
+                final double[] evaluation = expansion.evaluationRows(index + 1, nodes.players)[index];
+                newNodeState.evaluate(expansion.evaluationDepth, evaluation);
+                expansion.evaluated(index, evaluation);
+            }
+        }
+        if (batchEvaluator != null) {
+            evaluateBatch(expansion);
         }
-        
-        return subNodes;
     }
 
-	private void pushInToBeExpanded(TreeSearchNode<M, G> node) {
-		toBeExpanded.add(node);		
-	}
-
-    private TreeSearchNode<M, G> evaluate(G newNodeState, M move, int depth, TreeSearchNode<M, G> father) throws TimeoutException {
-        evaluationsPerformed++;
-        if (father != null && newNodeState == father.getGame()) {
-            throw new IllegalArgumentException(
-                    "Your game state is not duplicated! Tree search require to duplicate the game state since it will explore the tree incrementally");
+    private void evaluateBatch(Expansion expansion) throws TimeoutException {
+        final List<G> batch = expansion.batch;
+        batch.clear();
+        for (int i = 0; i < expansion.moves.size(); i++) {
+            if (expansion.transpositions[i] == NONE) {
+                batch.add(expansion.games.get(i));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
         }
+        countEvaluations(batch.size());
+        final double[][] evaluations = expansion.evaluationRows(batch.size(), nodes.players);
+        batchEvaluator.evaluate(batch, expansion.evaluationDepth, evaluations);
+        batch.clear();
+        int evaluation = 0;
+        for (int i = 0; i < expansion.moves.size(); i++) {
+            if (expansion.transpositions[i] == NONE) {
+                expansion.evaluated(i, evaluations[evaluation++]);
+            }
+        }
+    }
+
+    private void countEvaluations(int count) throws TimeoutException {
+        final int evaluationsPerformed = this.evaluationsPerformed.addAndGet(count);
         if (evaluationsMax > 0 && evaluationsPerformed > evaluationsMax) {
             throw new TimeoutException();
         }
-        double[] eval = newNodeState.evaluate(depth);
-        return new TreeSearchNode<>(eval, move, newNodeState, depth, father, depthPenaltyFactor, sorter.converter.convert(eval, newNodeState.currentPlayer()));
+    }
+
+    /**
+     * Add the evaluated sub nodes to the tree, in the frontier, and backpropagate their values
+     */
+    private void commit(Expansion expansion) {
+        final int toExpand = expansion.node;
+        final int firstEdge = nodes.edgesSize;
+        for (int i = 0; i < expansion.moves.size(); i++) {
+            final G newGame = expansion.games.get(i);
+            int subNode = expansion.transpositions[i];
+            if (subNode == NONE && mergeTranspositions) {
+                // Added since the evaluation, by another thread or by a previous move of the same node
+                subNode = nodes.findTransposition(expansion.hashes[i], expansion.depth, newGame, live);
+            }
+            final double value;
+            if (subNode == NONE) {
+                subNode = nodes.addNode(expansion.evaluations.get(i), newGame, expansion.players[i], expansion.depth, expansion.priorities[i],
+                        expansion.hashes[i]);
+                toBeExpanded.add(subNode, nodes.priorities[subNode]);
+                value = expansion.values[i];
+            } else {
+                value = converter.convert(nodes.evaluation(nodes.valueNodes[subNode]), expansion.fatherPlayer);
+            }
+            nodes.addEdge(toExpand, subNode, expansion.moves.get(i), value);
+        }
+        nodes.firstEdges[toExpand] = firstEdge;
+        nodes.edgeCounts[toExpand] = expansion.moves.size();
+        backPropagateExpansion(toExpand);
+        expansion.game = null;
+        expansion.moves.clear();
+        expansion.games.clear();
+        expansion.evaluations.clear();
+    }
+
+    /**
+     * Once expanded, the value of the node is the one of its best sub node. Only the fathers whose best sub node changes are updated,
+     * so it costs O(depth) unless the best sub node of a father gets worse and its brothers must be compared again.
+     * A shared node updates all its fathers.
+     */
+    private void backPropagateExpansion(int expanded) {
+        if (nodes.edgeCounts[expanded] == 0) {
+            // End of the game, the node keeps its own evaluation
+            return;
+        }
+        selectBestEdge(expanded);
+        nodes.valueNodes[expanded] = nodes.valueNodes[nodes.edgeNodes[nodes.bestEdges[expanded]]];
+        int stackSize = 0;
+        propagation[stackSize++] = expanded;
+        while (stackSize > 0) {
+            // The value of the node changed
+            final int node = propagation[--stackSize];
+            for (int edge = nodes.firstIncomingEdges[node]; edge != NONE; edge = nodes.nextIncomingEdges[edge]) {
+                final int father = nodes.edgeFathers[edge];
+                final double previousValue = nodes.edgeValues[edge];
+                nodes.edgeValues[edge] = converter.convert(nodes.evaluation(nodes.valueNodes[node]), nodes.currentPlayers[father]);
+                final int bestEdge = nodes.bestEdges[father];
+                if (bestEdge == edge) {
+                    if (nodes.edgeValues[edge] < previousValue) {
+                        // The best sub node got worse, one of its brothers might be better now
+                        selectBestEdge(father);
+                    }
+                } else if (nodes.edgeValues[edge] > nodes.edgeValues[bestEdge]) {
+                    nodes.bestEdges[father] = edge;
+                } else {
+                    continue;
+                }
+                final int valueNode = nodes.valueNodes[nodes.edgeNodes[nodes.bestEdges[father]]];
+                if (nodes.valueNodes[father] == valueNode) {
+                    continue;
+                }
+                nodes.valueNodes[father] = valueNode;
+                if (stackSize == propagation.length) {
+                    propagation = Arrays.copyOf(propagation, stackSize * 2);
+                }
+                propagation[stackSize++] = father;
+            }
+        }
+    }
+
+    private void selectBestEdge(int node) {
+        final int first = nodes.firstEdges[node];
+        int bestEdge = first;
+        for (int edge = first + 1; edge < first + nodes.edgeCounts[node]; edge++) {
+            if (nodes.edgeValues[edge] > nodes.edgeValues[bestEdge]) {
+                bestEdge = edge;
+            }
+        }
+        nodes.bestEdges[node] = bestEdge;
     }
 
 	private void treeSearchLoop(final IMoveGenerator<M, G> generator) throws TimeoutException {
+		reopenCollapsedNodes();
+		if (expansions.size() > 1) {
+		    parallelTreeSearchLoop(generator);
+		    return;
+		}
 		while (!toBeExpanded.isEmpty()) {
-		    timer.timeCheck();
-		    TreeSearchNode<M, G> toExpand = toBeExpanded.poll();
-		    List<TreeSearchNode<M, G>> expandeds = expansion(toExpand, generator);
-		    
-		    toExpand.setSubNodes(expandeds);
-		    if (!expandeds.isEmpty()){
-		    	toExpand.resetEvaluation(sorter);
+		    timeCheck();
+		    reclaimMemory();
+		    if (toBeExpanded.isEmpty()) {
+		        // Only fully explored nodes were left under the root
+		        break;
+		    }
+		    final int node = toBeExpanded.poll();
+		    if (isExpandable(node)) {
+		        try {
+		            expansion(node, generator);
+		        } catch (TimeoutException e) {
+		            // Still to be expanded by the next search
+		            toBeExpanded.add(node, nodes.priorities[node]);
+		            throw e;
+		        }
 		    }
 		}
 	}
 
-	private M returnCurrentBest(int currentPlayer) {
-		if (rootNodes.isEmpty())
-			return null;
-		best = rootNodes.get(0);
-        for (TreeSearchNode<M, G> node : rootNodes) {
-            if (sorter.isBetter(node.subTreeValue, 1.0, currentPlayer, best.subTreeValue, 1.0, currentPlayer)) {
-                best = node;
+    private void parallelTreeSearchLoop(final IMoveGenerator<M, G> generator) throws TimeoutException {
+        stopWorkers = false;
+        timedOut = false;
+        expansionsInFlight = 0;
+        final List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < expansions.size(); i++) {
+            final Expansion expansion = expansions.get(i);
+            helpers.add(executor().submit(() -> {
+                try {
+                    work(expansion, generator);
+                } catch (TimeoutException e) {
+                    // The other threads are stopped
+                }
+            }));
+        }
+        try {
+            work(expansions.get(0), generator);
+        } catch (TimeoutException e) {
+            // The other threads are stopped
+        } finally {
+            synchronized (lock) {
+                stopWorkers = true;
+                lock.notifyAll();
             }
+            for (final Future<?> helper : helpers) {
+                try {
+                    helper.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        if (timedOut) {
+            throw new TimeoutException();
         }
+    }
 
-        return best.getMove();
-	}
+    private void work(Expansion expansion, IMoveGenerator<M, G> generator) throws TimeoutException {
+        while (true) {
+            try {
+                timeCheck();
+            } catch (TimeoutException e) {
+                synchronized (lock) {
+                    stopWorkers = true;
+                    timedOut = true;
+                    lock.notifyAll();
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                int node = NONE;
+                while (node == NONE) {
+                    if (stopWorkers) {
+                        return;
+                    }
+                    if (toBeExpanded.isEmpty() || needsMemory()) {
+                        if (expansionsInFlight > 0) {
+                            // Wait for new sub nodes, or for the tree to be stable before reclaiming memory
+                            try {
+                                lock.wait();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                stopWorkers = true;
+                                return;
+                            }
+                            continue;
+                        }
+                        if (!toBeExpanded.isEmpty()) {
+                            reclaimMemory();
+                        }
+                        if (toBeExpanded.isEmpty()) {
+                            // The whole game tree has been explored
+                            stopWorkers = true;
+                            lock.notifyAll();
+                            return;
+                        }
+                    }
+                    final int candidate = toBeExpanded.poll();
+                    if (isExpandable(candidate)) {
+                        node = candidate;
+                    }
+                }
+                nodes.edgeCounts[node] = TreeSearchNodeStore.EXPANDING;
+                expansionsInFlight++;
+                expansion.prepare(node);
+            }
+            try {
+                evaluateSubNodes(expansion, generator);
+            } catch (TimeoutException | RuntimeException e) {
+                synchronized (lock) {
+                    expansionsInFlight--;
+                    nodes.edgeCounts[expansion.node] = NONE;
+                    // Still to be expanded by the next search
+                    toBeExpanded.add(expansion.node, nodes.priorities[expansion.node]);
+                    stopWorkers = true;
+                    timedOut |= e instanceof TimeoutException;
+                    lock.notifyAll();
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                expansionsInFlight--;
+                nodes.edgeCounts[expansion.node] = NONE;
+                commit(expansion);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(expansions.size() - 1, runnable -> {
+                final Thread thread = new Thread(runnable, "tree-search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private void timeCheck() throws TimeoutException {
+        if (!pondering) {
+            timer.timeCheck();
+        } else if (ponderingStopped) {
+            throw new TimeoutException();
+        }
+    }
+
+    private void checkNotPondering() {
+        if (ponderer != null) {
+            throw new IllegalStateException("The search is pondering, call stopPondering first");
+        }
+    }
 
-	private void repushToBeExpandedNodes(TreeSearchNode<M, G> node) {
-		node.decrementDepth();
-		if (node.subNodes!=null){
-			for (TreeSearchNode<M, G> subNode: node.subNodes){
-				repushToBeExpandedNodes(subNode);
+    private boolean isExpandable(int node) {
+        // The new root may have been expanded by prun while still in the frontier
+        return nodes.edgeCounts[node] == NONE && (!pruned || isUnderRoot(node));
+    }
+
+    private boolean needsMemory() {
+        return (nodesMax > 0 && nodes.size >= nodesMax) || (pruned && nodes.size >= nodes.capacity());
+    }
+
+    private void reclaimMemory() {
+        if (nodesMax > 0 && nodes.size >= nodesMax) {
+            evict();
+        } else if (pruned && nodes.size >= nodes.capacity()) {
+            // Reclaim the pruned nodes rather than growing the storage
+            compactTree();
+        }
+    }
+
+    private boolean isUnderRoot(int node) {
+        // Depths decrease from a node to its fathers, so only the nodes deeper than the root can be under it
+        while (nodes.depths[node] > rootDepth) {
+            final int edge = nodes.firstIncomingEdges[node];
+            if (edge == NONE) {
+                return false;
+            }
+            if (nodes.nextIncomingEdges[edge] != NONE) {
+                return isUnderRootThroughAnyFather(node);
+            }
+            node = nodes.edgeFathers[edge];
+        }
+        return node == root;
+    }
+
+    private boolean isUnderRootThroughAnyFather(int node) {
+        if (marks.length < nodes.size) {
+            marks = new int[nodes.capacity()];
+        }
+        mark++;
+        int stackSize = 0;
+        ancestors[stackSize++] = node;
+        marks[node] = mark;
+        while (stackSize > 0) {
+            final int ancestor = ancestors[--stackSize];
+            if (ancestor == root) {
+                return true;
+            }
+            if (nodes.depths[ancestor] <= rootDepth) {
+                continue;
+            }
+            for (int edge = nodes.firstIncomingEdges[ancestor]; edge != NONE; edge = nodes.nextIncomingEdges[edge]) {
+                final int father = nodes.edgeFathers[edge];
+                if (marks[father] != mark) {
+                    marks[father] = mark;
+                    if (stackSize == ancestors.length) {
+                        ancestors = Arrays.copyOf(ancestors, stackSize * 2);
+                    }
+                    ancestors[stackSize++] = father;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the nodes that are not under the root, rebase the priorities on the root depth, and rebuild the frontier
+     */
+    private void compactTree() {
+        root = nodes.compact(root);
+        pruned = false;
+        if (priorityDepth != rootDepth) {
+            final double factor = Math.pow(depthPenaltyFactor, priorityDepth - rootDepth);
+            for (int node = 0; node < nodes.size; node++) {
+                nodes.priorities[node] *= factor;
+            }
+            priorityDepth = rootDepth;
+        }
+        toBeExpanded.clear();
+        for (int node = 0; node < nodes.size; node++) {
+            if (nodes.edgeCounts[node] == NONE) {
+                toBeExpanded.append(node, nodes.priorities[node]);
+            }
+        }
+        toBeExpanded.heapify();
+    }
+
+    /**
+     * Put the nodes collapsed by the previous searches back in the frontier
+     */
+    private void reopenCollapsedNodes() {
+        if (!collapsedNodes) {
+            return;
+        }
+        collapsedNodes = false;
+        for (int node = 0; node < nodes.size; node++) {
+            if (nodes.edgeCounts[node] == TreeSearchNodeStore.COLLAPSED) {
+                nodes.edgeCounts[node] = NONE;
+                toBeExpanded.addOrUpdate(node, nodes.priorities[node]);
+            }
+        }
+    }
+
+    private void evict() {
+        if (pruned) {
+            compactTree();
+            if (nodes.size < nodesMax) {
+                // The pruned nodes were enough
+                return;
+            }
+        }
+        final int target = nodesMax - nodesMax / 4;
+        // Fringe: the expanded nodes whose sub nodes are all leaves, the lowest priority first
+        fringe.clear();
+        for (int node = 0; node < nodes.size; node++) {
+            addIfFringe(node);
+        }
+        int remaining = nodes.size;
+        while (remaining > target && !fringe.isEmpty()) {
+            final int node = fringe.poll();
+            remaining -= nodes.edgeCounts[node];
+            nodes.collapse(node);
+            collapsedNodes = true;
+            // Collapsing a node can make its fathers part of the fringe
+            for (int edge = nodes.firstIncomingEdges[node]; edge != NONE; edge = nodes.nextIncomingEdges[edge]) {
+                addIfFringe(nodes.edgeFathers[edge]);
+            }
+        }
+        compactTree();
+    }
+
+    private void addIfFringe(int node) {
+        if (node == root || fringe.contains(node) || nodes.edgeCounts[node] <= 0) {
+            return;
+        }
+        double priority = Double.NEGATIVE_INFINITY;
+        boolean fullyExplored = true;
+        for (int edge = nodes.firstEdges[node]; edge < nodes.firstEdges[node] + nodes.edgeCounts[node]; edge++) {
+            final int subNode = nodes.edgeNodes[edge];
+            if (nodes.edgeCounts[subNode] > 0) {
+                return;
+            }
+            fullyExplored &= nodes.edgeCounts[subNode] == 0;
+            priority = Math.max(priority, nodes.priorities[subNode]);
+        }
+        // A node whose sub nodes are all final states is kept: expanding it again would not find anything new, and the search could never end
+        if (!fullyExplored) {
+            fringe.add(node, -priority);
+        }
+    }
+
+	private M returnCurrentBest() {
+		best = NONE;
+		if (root == NONE || nodes.edgeCounts[root] <= 0)
+			return null;
+		final int first = nodes.firstEdges[root];
+		best = first;
+		for (int edge = first + 1; edge < first + nodes.edgeCounts[root]; edge++) {
+			if (nodes.edgeValues[edge] > nodes.edgeValues[best]) {
+				best = edge;
 			}
 		}
-		else{
-			pushInToBeExpanded(node);
-		}
+        return move(best);
+	}
+
+	@SuppressWarnings("unchecked")
+	private G game(int node) {
+		return (G) nodes.games[node];
 	}
 
-	private void printNode(TreeSearchNode<M, G> node, PrintStream out) {
-        for (int i = 0; i < node.getDepth(); i++) {
+	@SuppressWarnings("unchecked")
+	private M move(int edge) {
+		return edge == NONE ? null : (M) nodes.edgeMoves[edge];
+	}
+
+    private long hash(G game) {
+        return mergeTranspositions ? ((IHashableGame) game).hash() : 0;
+    }
+
+	private void printNode(int edge, PrintStream out) {
+        final int node = nodes.edgeNodes[edge];
+        for (int i = rootDepth; i < nodes.depths[node]; i++) {
             out.print("\t");
         }
-        out.println(node.toString());
-        if (node.subNodes != null) {
-            node.subNodes.stream().forEach(n -> printNode(n, out));
+        out.println("TreeSearchNode{subTree:" + Arrays.toString(nodes.evaluationCopy(nodes.valueNodes[node])) + ",Evaluation="
+                + Arrays.toString(nodes.evaluationCopy(node)) + ",Eval:" + nodes.priorities[node] + ",Player:" + nodes.currentPlayers[node] + ",Move="
+                + nodes.edgeMoves[edge] + ", depth=" + (nodes.depths[node] - rootDepth) + "}");
+        final int first = nodes.firstEdges[node];
+        for (int subEdge = first; subEdge < first + Math.max(0, nodes.edgeCounts[node]); subEdge++) {
+            printNode(subEdge, out);
         }
     }
 }
@@ -0,0 +1,357 @@
+package competitive.programming.gametheory.treesearch;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * @author Manwe
+ *
+ *         Storage of the TreeSearch game tree nodes. Instead of one object per node, each node is an index in preallocated primitive arrays
+ *         (structure of arrays), so that growing a tree of millions of nodes does not create any garbage. The arrays are reused from one search
+ *         to the next and only grow when the tree gets bigger than ever.
+ *
+ *         A node is linked to its sub nodes by edges, stored the same way. The edges of a node are stored contiguously, right after each other,
+ *         so a node only knows its first edge and their count. An edge holds the move leading to the sub node.
+ *         When transpositions are merged, a node can be the sub node of several fathers, so each node also knows the list of the edges leading to it.
+ *         Game states and moves are held in parallel slot tables.
+ */
+class TreeSearchNodeStore {
+    static final int NONE = -1;
+    static final int EXPANDING = -2;
+    static final int COLLAPSED = -3;
+
+    int size;
+    int players;
+    // evaluation of node i for player p is at index i * players + p
+    double[] evaluations;
+    // priority of the node to be expanded
+    double[] priorities;
+    // the node whose evaluation is the sub tree value
+    int[] valueNodes;
+    int[] firstEdges;
+    // NONE while the node is not expanded, EXPANDING while a thread is expanding it, COLLAPSED once its sub nodes have been removed
+    int[] edgeCounts;
+    int[] bestEdges;
+    // head of the list of the edges leading to the node, linked by nextIncomingEdges
+    int[] firstIncomingEdges;
+    int[] depths;
+    int[] currentPlayers;
+    long[] hashes;
+    Object[] games;
+
+    int edgesSize;
+    int[] edgeNodes;
+    int[] edgeFathers;
+    int[] nextIncomingEdges;
+    // sub tree value of the edge node converted for the father player, the one choosing between the edges
+    double[] edgeValues;
+    Object[] edgeMoves;
+
+    private int[] relocations;
+    private int[] work;
+    private int[] transpositions;
+    private double[] scratch = new double[0];
+
+    TreeSearchNodeStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Node store capacity must be strictly positive");
+        }
+        priorities = new double[capacity];
+        valueNodes = new int[capacity];
+        firstEdges = new int[capacity];
+        edgeCounts = new int[capacity];
+        bestEdges = new int[capacity];
+        firstIncomingEdges = new int[capacity];
+        depths = new int[capacity];
+        currentPlayers = new int[capacity];
+        hashes = new long[capacity];
+        games = new Object[capacity];
+        relocations = new int[capacity];
+        work = new int[capacity];
+        evaluations = new double[0];
+        edgeNodes = new int[capacity];
+        edgeFathers = new int[capacity];
+        nextIncomingEdges = new int[capacity];
+        edgeValues = new double[capacity];
+        edgeMoves = new Object[capacity];
+    }
+
+    /**
+     * Remove all the nodes, keeping the allocated arrays
+     */
+    void clear(int players) {
+        truncate(0);
+        Arrays.fill(edgeMoves, 0, edgesSize, null);
+        edgesSize = 0;
+        if (transpositions != null) {
+            Arrays.fill(transpositions, NONE);
+        }
+        if (this.players != players) {
+            this.players = players;
+            evaluations = new double[games.length * players];
+            scratch = new double[players];
+        }
+    }
+
+    /**
+     * @param enabled
+     *            true to index the nodes by their hash, so that findTransposition can find them
+     */
+    void setTranspositions(boolean enabled) {
+        if (enabled == (transpositions != null)) {
+            return;
+        }
+        transpositions = enabled ? new int[transpositionsLength(games.length)] : null;
+        rebuildTranspositions();
+    }
+
+    int addNode(double[] evaluation, Object game, int currentPlayer, int depth, double priority, long hash) {
+        if (evaluation.length != players) {
+            throw new IllegalArgumentException("All the evaluations must have the same number of players");
+        }
+        ensureCapacity(size + 1);
+        final int node = size++;
+        System.arraycopy(evaluation, 0, evaluations, node * players, players);
+        games[node] = game;
+        currentPlayers[node] = currentPlayer;
+        depths[node] = depth;
+        priorities[node] = priority;
+        hashes[node] = hash;
+        valueNodes[node] = node;
+        firstEdges[node] = NONE;
+        edgeCounts[node] = NONE;
+        bestEdges[node] = NONE;
+        firstIncomingEdges[node] = NONE;
+        if (transpositions != null) {
+            register(node);
+        }
+        return node;
+    }
+
+    /**
+     * Link a father to one of its sub nodes. All the edges of a father must be added one after the other.
+     */
+    int addEdge(int father, int node, Object move, double value) {
+        ensureEdgeCapacity(edgesSize + 1);
+        final int edge = edgesSize++;
+        edgeNodes[edge] = node;
+        edgeFathers[edge] = father;
+        edgeMoves[edge] = move;
+        edgeValues[edge] = value;
+        nextIncomingEdges[edge] = firstIncomingEdges[node];
+        firstIncomingEdges[node] = edge;
+        return edge;
+    }
+
+    /**
+     * @return a node at the given depth, with the given hash, whose game state equals the given one and that is accepted, or NONE if there is none
+     */
+    int findTransposition(long hash, int depth, Object game, IntPredicate accept) {
+        final int mask = transpositions.length - 1;
+        for (int slot = slot(hash, mask); transpositions[slot] != NONE; slot = (slot + 1) & mask) {
+            final int node = transpositions[slot];
+            if (hashes[node] == hash && depths[node] == depth && games[node].equals(game) && accept.test(node)) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    int capacity() {
+        return games.length;
+    }
+
+    /**
+     * Remove the nodes from newSize
+     */
+    void truncate(int newSize) {
+        Arrays.fill(games, newSize, size, null);
+        size = newSize;
+    }
+
+    /**
+     * @return the evaluation of the node, in an array reused by the next call
+     */
+    double[] evaluation(int node) {
+        System.arraycopy(evaluations, node * players, scratch, 0, players);
+        return scratch;
+    }
+
+    double[] evaluationCopy(int node) {
+        return Arrays.copyOfRange(evaluations, node * players, (node + 1) * players);
+    }
+
+    /**
+     * Remove the sub nodes of an expanded node whose sub nodes are all leaves. The node becomes a leaf again: it keeps its backed up value
+     * as its own evaluation, and its priority is the best priority of its sub nodes. The sub nodes are really removed by the next compaction,
+     * unless another father still leads to them. The node is COLLAPSED until the search makes it expandable again.
+     */
+    void collapse(int node) {
+        final int valueNode = valueNodes[node];
+        System.arraycopy(evaluations, valueNode * players, evaluations, node * players, players);
+        valueNodes[node] = node;
+        // The ancestors having the same value now take it from the collapsed node
+        takeValue(node, valueNode);
+        double priority = Double.NEGATIVE_INFINITY;
+        for (int edge = firstEdges[node]; edge < firstEdges[node] + edgeCounts[node]; edge++) {
+            priority = Math.max(priority, priorities[edgeNodes[edge]]);
+        }
+        priorities[node] = priority;
+        firstEdges[node] = NONE;
+        edgeCounts[node] = COLLAPSED;
+        bestEdges[node] = NONE;
+    }
+
+    private void takeValue(int node, int previousValueNode) {
+        for (int edge = firstIncomingEdges[node]; edge != NONE; edge = nextIncomingEdges[edge]) {
+            final int father = edgeFathers[edge];
+            // Only through the best sub node, another father may take the same value from another sub node
+            if (valueNodes[father] == previousValueNode && edgeNodes[bestEdges[father]] == node) {
+                valueNodes[father] = valueNodes[node];
+                takeValue(father, previousValueNode);
+            }
+        }
+    }
+
+    /**
+     * Keep only the given node and all the nodes it leads to. They are moved to the beginning of the arrays, in the same order,
+     * and the edges of a node stay contiguous.
+     *
+     * @return the new index of the given node
+     */
+    int compact(int root) {
+        Arrays.fill(relocations, 0, size, NONE);
+        // Mark the nodes the root leads to. The sub nodes of collapsed nodes can not be reached through them anymore
+        int stackSize = 0;
+        relocations[root] = 0;
+        work[stackSize++] = root;
+        while (stackSize > 0) {
+            final int node = work[--stackSize];
+            for (int edge = firstEdges[node]; edge < firstEdges[node] + edgeCounts[node]; edge++) {
+                final int subNode = edgeNodes[edge];
+                if (relocations[subNode] == NONE) {
+                    relocations[subNode] = 0;
+                    work[stackSize++] = subNode;
+                }
+            }
+        }
+        int kept = 0;
+        for (int node = 0; node < size; node++) {
+            if (relocations[node] != NONE) {
+                relocations[node] = kept++;
+            }
+        }
+        // Edges are stored in the expansions order: moving them in this order never overwrites an edge that is not moved yet
+        int edgesKept = 0;
+        for (int edge = 0; edge < edgesSize; edge++) {
+            final int father = edgeFathers[edge];
+            if (relocations[father] == NONE || edgeCounts[father] <= 0 || edge < firstEdges[father] || edge >= firstEdges[father] + edgeCounts[father]) {
+                continue;
+            }
+            if (edge == firstEdges[father]) {
+                work[father] = edgesKept;
+            }
+            if (edge == bestEdges[father]) {
+                bestEdges[father] = edgesKept;
+            }
+            edgeNodes[edgesKept] = relocations[edgeNodes[edge]];
+            edgeFathers[edgesKept] = relocations[father];
+            edgeValues[edgesKept] = edgeValues[edge];
+            edgeMoves[edgesKept] = edgeMoves[edge];
+            edgesKept++;
+        }
+        Arrays.fill(edgeMoves, edgesKept, edgesSize, null);
+        edgesSize = edgesKept;
+        for (int node = 0; node < size; node++) {
+            final int relocated = relocations[node];
+            if (relocated == NONE) {
+                continue;
+            }
+            System.arraycopy(evaluations, node * players, evaluations, relocated * players, players);
+            priorities[relocated] = priorities[node];
+            valueNodes[relocated] = relocations[valueNodes[node]];
+            edgeCounts[relocated] = edgeCounts[node];
+            firstEdges[relocated] = edgeCounts[node] > 0 ? work[node] : NONE;
+            bestEdges[relocated] = edgeCounts[node] > 0 ? bestEdges[node] : NONE;
+            firstIncomingEdges[relocated] = NONE;
+            depths[relocated] = depths[node];
+            currentPlayers[relocated] = currentPlayers[node];
+            hashes[relocated] = hashes[node];
+            games[relocated] = games[node];
+        }
+        final int relocatedRoot = relocations[root];
+        truncate(kept);
+        // Rebuild the incoming edges lists, edges from the removed nodes are dropped
+        for (int edge = edgesSize - 1; edge >= 0; edge--) {
+            final int node = edgeNodes[edge];
+            nextIncomingEdges[edge] = firstIncomingEdges[node];
+            firstIncomingEdges[node] = edge;
+        }
+        rebuildTranspositions();
+        return relocatedRoot;
+    }
+
+    private void register(int node) {
+        final int mask = transpositions.length - 1;
+        int slot = slot(hashes[node], mask);
+        while (transpositions[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        transpositions[slot] = node;
+    }
+
+    private void rebuildTranspositions() {
+        if (transpositions == null) {
+            return;
+        }
+        Arrays.fill(transpositions, NONE);
+        for (int node = 0; node < size; node++) {
+            register(node);
+        }
+    }
+
+    private static int slot(long hash, int mask) {
+        return Long.hashCode(hash * 0x9E3779B97F4A7C15L) & mask;
+    }
+
+    private static int transpositionsLength(int capacity) {
+        // Power of two at least twice the capacity, so that the linear probing stays short
+        return Integer.highestOneBit(capacity) << 2;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= games.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, games.length * 2);
+        evaluations = Arrays.copyOf(evaluations, newCapacity * players);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        valueNodes = Arrays.copyOf(valueNodes, newCapacity);
+        firstEdges = Arrays.copyOf(firstEdges, newCapacity);
+        edgeCounts = Arrays.copyOf(edgeCounts, newCapacity);
+        bestEdges = Arrays.copyOf(bestEdges, newCapacity);
+        firstIncomingEdges = Arrays.copyOf(firstIncomingEdges, newCapacity);
+        depths = Arrays.copyOf(depths, newCapacity);
+        currentPlayers = Arrays.copyOf(currentPlayers, newCapacity);
+        hashes = Arrays.copyOf(hashes, newCapacity);
+        games = Arrays.copyOf(games, newCapacity);
+        relocations = new int[newCapacity];
+        work = new int[newCapacity];
+        if (transpositions != null) {
+            transpositions = new int[transpositionsLength(newCapacity)];
+            rebuildTranspositions();
+        }
+    }
+
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity <= edgeNodes.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, edgeNodes.length * 2);
+        edgeNodes = Arrays.copyOf(edgeNodes, newCapacity);
+        edgeFathers = Arrays.copyOf(edgeFathers, newCapacity);
+        nextIncomingEdges = Arrays.copyOf(nextIncomingEdges, newCapacity);
+        edgeValues = Arrays.copyOf(edgeValues, newCapacity);
+        edgeMoves = Arrays.copyOf(edgeMoves, newCapacity);
+    }
+}
@@ -33,6 +33,18 @@ public class Timer {
         timeout = startTime+(long)(durationInMilliseconds*1000000);
     }
 
+    /**
+     * @return
+     *  the number of nanoseconds from now until the timeout, negative if it has been reached.
+     *  Will return Long.MAX_VALUE if the timer has never been started
+     */
+    public long remainingTimeInNanoSeconds() {
+        if (startTime <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return timeout - System.nanoTime();
+    }
+
     /**
      * Verify if the timeout has been reached. If yes, throws a TimeoutException
      * will not throw anything if the timer has never been started.
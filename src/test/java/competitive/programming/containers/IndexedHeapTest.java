@@ -0,0 +1,120 @@
+package competitive.programming.containers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexedHeapTest {
+
+    @Test
+    public void testPollOrder() {
+        final IndexedHeap heap = new IndexedHeap(4);
+        heap.add(3, 1.5);
+        heap.add(0, 7);
+        heap.add(12, -2);
+        heap.add(5, 3);
+        heap.add(8, 7.5);
+
+        assertEquals(5, heap.size());
+        assertEquals(8, heap.peek());
+        assertEquals(7.5, heap.peekKey(), 0.0001);
+        assertEquals(8, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(5, heap.poll());
+        assertEquals(3, heap.poll());
+        assertEquals(12, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        final IndexedHeap heap = new IndexedHeap(16);
+        for (int id = 0; id < 10; id++) {
+            heap.add(id, id);
+        }
+        heap.update(2, 20);
+        heap.update(9, -1);
+        heap.remove(8);
+        heap.addOrUpdate(7, 0.5);
+        heap.addOrUpdate(11, 6.5);
+
+        assertFalse(heap.contains(8));
+        assertEquals(0.5, heap.key(7), 0.0001);
+        final int[] expected = { 2, 11, 6, 5, 4, 3, 1, 7, 0, 9 };
+        for (final int id : expected) {
+            assertEquals(id, heap.poll());
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testHeapify() {
+        final Random random = new Random(42);
+        final IndexedHeap heap = new IndexedHeap(8);
+        final double[] keys = new double[1000];
+        for (int id = 0; id < keys.length; id++) {
+            keys[id] = random.nextInt(100);
+            heap.append(id, keys[id]);
+        }
+        heap.heapify();
+
+        Arrays.sort(keys);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            assertEquals(keys[i], heap.peekKey(), 0.0001);
+            heap.poll();
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testHeapifyEmptyHeap() {
+        final IndexedHeap heap = new IndexedHeap(4);
+        heap.add(3, 1.0);
+        heap.clear();
+        heap.heapify();
+        // The id left in the array by clear is not back in the heap
+        assertFalse(heap.contains(3));
+        heap.add(3, 2.0);
+        assertEquals(3, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        final Random random = new Random(7);
+        final IndexedHeap heap = new IndexedHeap(1);
+        final double[] keys = new double[200];
+        final boolean[] contained = new boolean[keys.length];
+        for (int i = 0; i < 20000; i++) {
+            final int id = random.nextInt(keys.length);
+            final int operation = random.nextInt(4);
+            if (operation == 0 && !heap.isEmpty()) {
+                final int polled = heap.poll();
+                for (int other = 0; other < keys.length; other++) {
+                    assertTrue(!contained[other] || keys[other] <= keys[polled]);
+                }
+                contained[polled] = false;
+            } else if (operation == 1 && contained[id]) {
+                heap.remove(id);
+                contained[id] = false;
+            } else {
+                keys[id] = random.nextDouble();
+                heap.addOrUpdate(id, keys[id]);
+                contained[id] = true;
+            }
+            assertEquals(contained[id], heap.contains(id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddTwice() {
+        final IndexedHeap heap = new IndexedHeap(4);
+        heap.add(1, 1);
+        heap.add(1, 2);
+    }
+}
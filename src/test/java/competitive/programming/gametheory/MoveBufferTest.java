@@ -0,0 +1,55 @@
+package competitive.programming.gametheory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MoveBufferTest {
+
+    private static MoveBuffer<String> buffer(String... moves) {
+        final MoveBuffer<String> buffer = new MoveBuffer<>(1);
+        for (int i = 0; i < moves.length; i++) {
+            buffer.add(moves[i], i);
+        }
+        return buffer;
+    }
+
+    private static void assertContent(MoveBuffer<String> buffer, String moves, int... codes) {
+        assertEquals(Arrays.asList(moves.split(",")), buffer);
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(codes[i], buffer.code(i));
+        }
+    }
+
+    @Test
+    public void testReorderKeepsTheCodes() {
+        final MoveBuffer<String> buffer = buffer("a", "b", "c", "d");
+        buffer.moveToFront(2);
+        assertContent(buffer, "c,a,b,d", 2, 0, 1, 3);
+        buffer.swap(1, 3);
+        assertContent(buffer, "c,d,b,a", 2, 3, 1, 0);
+        buffer.sortByScores(1, new int[] { 0, 1, 5, 1 });
+        assertContent(buffer, "c,b,d,a", 2, 1, 3, 0);
+    }
+
+    @Test
+    public void testReuse() {
+        final MoveBuffer<String> buffer = buffer("a", "b", "c");
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        buffer.addAll(Arrays.asList("d", "e"));
+        assertContent(buffer, "d,e", MoveBuffer.NO_CODE, MoveBuffer.NO_CODE);
+        assertEquals(1, buffer.indexOf("e"));
+        assertEquals(-1, buffer.indexOf("a"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetAfterClear() {
+        final MoveBuffer<String> buffer = buffer("a");
+        buffer.clear();
+        buffer.get(0);
+    }
+}
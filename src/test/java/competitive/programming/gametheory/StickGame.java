@@ -1,6 +1,6 @@
 package competitive.programming.gametheory;
 
-public class StickGame implements IGame {
+public class StickGame implements IHashableGame, ICopyableGame<StickGame> {
     private int player;
     private int sticksRemaining;
     private final boolean gameStateDuplication;
@@ -32,7 +32,13 @@ public class StickGame implements IGame {
 
     @Override
     public double[] evaluate(int depth) {
-        final double[] evaluation = new double[] { 0, 0 };
+        final double[] evaluation = new double[2];
+        evaluate(depth, evaluation);
+        return evaluation;
+    }
+
+    @Override
+    public void evaluate(int depth, double[] evaluation) {
         if (getSticksRemaining() == 0) {
             // Player lost.
             assignEvaluation(evaluation, -100);
@@ -46,7 +52,30 @@ public class StickGame implements IGame {
             }
         }
         // System.out.println("Evaluation:" + Arrays.toString(evaluation));
-        return evaluation;
+    }
+
+    @Override
+    public StickGame copy() {
+        return new StickGame(player, sticksRemaining, gameStateDuplication);
+    }
+
+    @Override
+    public long hash() {
+        return sticksRemaining * 2 + player;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StickGame)) {
+            return false;
+        }
+        final StickGame other = (StickGame) obj;
+        return player == other.player && sticksRemaining == other.sticksRemaining && gameStateDuplication == other.gameStateDuplication;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) hash();
     }
 
     public int getSticksRemaining() {
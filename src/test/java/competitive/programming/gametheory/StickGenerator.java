@@ -22,4 +22,12 @@ public class StickGenerator implements IMoveGenerator<StickMove, StickGame> {
         }
         return moves;
     }
+
+    @Override
+    public void generateMoves(StickGame game, MoveBuffer<StickMove> moves) {
+        // Same moves, coded by their index in the move ordering tables
+        for (int sticks = Math.min(3, game.getSticksRemaining()); sticks > 0; sticks--) {
+            moves.add(new StickMove(sticks), sticks - 1);
+        }
+    }
 }
@@ -46,6 +46,16 @@ public class StickMove implements ICancellableMove<StickGame> {
         this.sticks = sticks;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof StickMove && ((StickMove) obj).sticks == sticks;
+    }
+
+    @Override
+    public int hashCode() {
+        return sticks;
+    }
+
     @Override
     public String toString() {
         return "Move[" + sticks + "]";
@@ -0,0 +1,52 @@
+package competitive.programming.gametheory.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TreeNodeSorterTest {
+
+    private static List<TreeNode<String, String>> nodes(double[]... evaluations) {
+        final List<TreeNode<String, String>> nodes = new ArrayList<>();
+        for (int i = 0; i < evaluations.length; i++) {
+            nodes.add(new TreeNode<>(evaluations[i], "move" + i, "game" + i, 0));
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testBestIsTheFirstOfTheHighestScores() {
+        final TreeNodeSorter<String, String> sorter = new TreeNodeSorter<>(ScoreConverters.OWN_SCORE);
+        final List<TreeNode<String, String>> nodes = nodes(new double[] { 1, 5 }, new double[] { 3, 0 }, new double[] { 3, 2 });
+        final List<TreeNode<String, String>> unsorted = new ArrayList<>(nodes);
+        assertSame(nodes.get(1), sorter.best(nodes, 0));
+        assertSame(nodes.get(0), sorter.best(nodes, 1));
+        assertEquals(unsorted, nodes);
+    }
+
+    @Test
+    public void testSorting() {
+        final TreeNodeSorter<String, String> sorter = new TreeNodeSorter<>(ScoreConverters.OWN_SCORE);
+        sorter.setSorting(true);
+        final List<TreeNode<String, String>> nodes = nodes(new double[] { 1, 5 }, new double[] { 3, 0 }, new double[] { 3, 2 },
+                new double[] { 4, 1 });
+        final List<TreeNode<String, String>> expected = Arrays.asList(nodes.get(3), nodes.get(1), nodes.get(2), nodes.get(0));
+        assertSame(nodes.get(3), sorter.best(nodes, 0));
+        assertEquals(expected, nodes);
+    }
+
+    @Test
+    public void testScoreConverters() {
+        final double[] scores = { 4, 7, 1 };
+        assertEquals(4, ScoreConverters.OWN_SCORE.convert(scores, 0), 0);
+        assertEquals(-3, ScoreConverters.OWN_MINUS_BEST_OTHER.convert(scores, 0), 0);
+        assertEquals(3, ScoreConverters.OWN_MINUS_BEST_OTHER.convert(scores, 1), 0);
+        assertEquals(-4, ScoreConverters.OWN_MINUS_OTHERS.convert(scores, 0), 0);
+        assertEquals(-10, ScoreConverters.OWN_MINUS_OTHERS.convert(scores, 2), 0);
+    }
+}
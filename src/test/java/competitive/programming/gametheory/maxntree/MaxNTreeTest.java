@@ -1,10 +1,24 @@
 package competitive.programming.gametheory.maxntree;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
+import competitive.programming.gametheory.ICancellableMove;
+import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IMoveGenerator;
 import competitive.programming.gametheory.StickGame;
+import competitive.programming.gametheory.StickGenerator;
 import competitive.programming.gametheory.StickMove;
 import competitive.programming.gametheory.Tester;
+import competitive.programming.gametheory.common.IBoundedScoreConverter;
 import competitive.programming.timemanagement.Timer;
 
 public class MaxNTreeTest {
@@ -17,4 +31,223 @@ public class MaxNTreeTest {
         Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), false);
         Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), true);
     }
+
+    @Test
+    public void testStickGameWithBatchEvaluator() {
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        final AtomicInteger evaluated = new AtomicInteger();
+        maxNTree.setBatchEvaluator((games, depth, evaluations) -> {
+            for (int i = 0; i < games.size(); i++) {
+                System.arraycopy(games.get(i).evaluate(depth), 0, evaluations[i], 0, 2);
+            }
+            evaluated.addAndGet(games.size());
+        });
+
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), true);
+        // The end of game states are still evaluated one by one
+        evaluated.set(0);
+        maxNTree.best(new StickGame(0, 9, true), new StickGenerator(), 0, 5);
+        assertTrue(evaluated.get() > 0 && evaluated.get() <= maxNTree.evaluations());
+    }
+
+    @Test
+    public void testStickGameParanoid() {
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        maxNTree.setMode(MaxNTree.Mode.PARANOID);
+
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameBestReply() {
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        maxNTree.setMode(MaxNTree.Mode.BEST_REPLY, game -> new StickMove(0));
+
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> maxNTree.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testParanoidPrunes() {
+        final MaxNTree<StickMove, StickGame> maxN = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        final MaxNTree<StickMove, StickGame> paranoid = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        paranoid.setMode(MaxNTree.Mode.PARANOID);
+
+        final StickMove maxNMove = maxN.best(new StickGame(0, 30, true), new StickGenerator(), 8, 9);
+        final StickMove paranoidMove = paranoid.best(new StickGame(0, 30, true), new StickGenerator(), 8, 9);
+        // In a zero sum 2 player game, Paranoid is a Max-N with alpha beta pruning
+        assertEquals(maxNMove, paranoidMove);
+        assertTrue(paranoid.evaluations() < maxN.evaluations() / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBestReplyWithoutNullMove() {
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        maxNTree.setMode(MaxNTree.Mode.BEST_REPLY);
+    }
+
+    @Test
+    public void testStickGameWithPruning() {
+        // Zero sum game: the evaluation of each player is between -100 and 100
+        final IBoundedScoreConverter converter = new IBoundedScoreConverter() {
+            @Override
+            public double convert(double[] rawScores, int player) {
+                return rawScores[player];
+            }
+
+            @Override
+            public double minScore() {
+                return -100;
+            }
+
+            @Override
+            public double maxScoreSum() {
+                return 0;
+            }
+        };
+        final MaxNTree<StickMove, StickGame> pruned = new MaxNTree<StickMove, StickGame>(new Timer(), converter);
+        Tester.testAlgo((game, generator, maxdepth) -> pruned.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> pruned.best(game, generator, 0, maxdepth), true);
+
+        final MaxNTree<StickMove, StickGame> maxN = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        final MaxNTree<StickMove, StickGame> maxNPruned = new MaxNTree<StickMove, StickGame>(new Timer(), converter);
+        assertEquals(maxN.best(new StickGame(0, 30, true), new StickGenerator(), 8, 9),
+                maxNPruned.best(new StickGame(0, 30, true), new StickGenerator(), 8, 9));
+        assertTrue(maxNPruned.evaluations() < maxN.evaluations());
+    }
+
+    @Test
+    public void testStickGameOnSeveralThreads() {
+        final MaxNTree<StickMove, StickGame> parallel = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        parallel.setThreads(4);
+        Tester.testAlgo((game, generator, maxdepth) -> parallel.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> parallel.best(game, generator, 0, maxdepth), true);
+
+        // Without pruning, the threads evaluate the same game states as one thread
+        final MaxNTree<StickMove, StickGame> sequential = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        assertEquals(sequential.best(new StickGame(0, 30, false), new StickGenerator(), 8, 9),
+                parallel.best(new StickGame(0, 30, false), new StickGenerator(), 8, 9));
+        assertEquals(sequential.evaluations(), parallel.evaluations());
+
+        parallel.setMode(MaxNTree.Mode.PARANOID);
+        Tester.testAlgo((game, generator, maxdepth) -> parallel.best(game, generator, 0, maxdepth), false);
+
+        // The threads are started again by the next search
+        parallel.shutdown();
+        Tester.testAlgo((game, generator, maxdepth) -> parallel.best(game, generator, 0, maxdepth), false);
+        parallel.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoThread() {
+        new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]).setThreads(0);
+    }
+
+    @Test
+    public void testIterativeDeepening() {
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(new Timer(), (rawScores, player) -> rawScores[player]);
+        final StickMove move = maxNTree.best(new StickGame(0, 30, true), new StickGenerator(), 0, 8);
+        assertEquals(1, move.getSticks());
+        final int evaluations = maxNTree.evaluations();
+        for (int depth = 0; depth < 8; depth++) {
+            assertTrue(maxNTree.timeTakenInNanoSeconds(depth) > 0);
+        }
+        assertEquals(0, maxNTree.timeTakenInNanoSeconds(8));
+
+        // The evaluations are counted per search
+        maxNTree.best(new StickGame(0, 30, true), new StickGenerator(), 0, 8);
+        assertEquals(evaluations, maxNTree.evaluations());
+    }
+
+    static class ThreePlayersGame implements IGame {
+        private final long seed;
+        private final int player;
+        private final int depth;
+
+        ThreePlayersGame(long seed, int player, int depth) {
+            this.seed = seed;
+            this.player = player;
+            this.depth = depth;
+        }
+
+        @Override
+        public int currentPlayer() {
+            return player;
+        }
+
+        @Override
+        public double[] evaluate(int depth) {
+            // Few distinct scores: many moves are equal for the player choosing them
+            final Random random = new Random(seed);
+            return new double[] { random.nextInt(3), random.nextInt(3), random.nextInt(3) };
+        }
+    }
+
+    static class ThreePlayersMove implements ICancellableMove<ThreePlayersGame> {
+        private final int index;
+        private ThreePlayersGame previous;
+
+        ThreePlayersMove(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public ThreePlayersGame execute(ThreePlayersGame game) {
+            previous = game;
+            return new ThreePlayersGame(game.seed * 31 + index + 1, (game.player + 1) % 3, game.depth + 1);
+        }
+
+        @Override
+        public ThreePlayersGame cancel(ThreePlayersGame game) {
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ThreePlayersMove && ((ThreePlayersMove) obj).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    @Test
+    public void testIterativeDeepeningKeepsTheTieBreaking() {
+        // Without pruning, the moves are searched in the order of the generator at every depth
+        final IMoveGenerator<ThreePlayersMove, ThreePlayersGame> generator = game -> {
+            final List<ThreePlayersMove> moves = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                moves.add(new ThreePlayersMove(i));
+            }
+            return moves;
+        };
+        final MaxNTree<ThreePlayersMove, ThreePlayersGame> iterative = new MaxNTree<>(new Timer(), (rawScores, player) -> rawScores[player]);
+        final MaxNTree<ThreePlayersMove, ThreePlayersGame> lastDepth = new MaxNTree<>(new Timer(), (rawScores, player) -> rawScores[player]);
+        for (int seed = 0; seed < 200; seed++) {
+            final ThreePlayersMove iterativeMove = iterative.best(new ThreePlayersGame(seed, 0, 0), generator, 0, 4);
+            final ThreePlayersMove lastDepthMove = lastDepth.best(new ThreePlayersGame(seed, 0, 0), generator, 3, 4);
+            assertEquals(lastDepthMove.index, iterativeMove.index);
+            assertArrayEquals(lastDepth.bestGame().evaluate(0), iterative.bestGame().evaluate(0), 0);
+        }
+    }
+
+    @Test
+    public void testDepthNotStartedWithoutEnoughTime() {
+        // Almost no time remaining, but the timer never times out
+        final Timer timer = new Timer() {
+            @Override
+            public long remainingTimeInNanoSeconds() {
+                return 1;
+            }
+        };
+        final MaxNTree<StickMove, StickGame> maxNTree = new MaxNTree<StickMove, StickGame>(timer, (rawScores, player) -> rawScores[player]);
+        assertEquals(1, maxNTree.best(new StickGame(0, 30, true), new StickGenerator(), 0, 8).getSticks());
+        // The time of the third depth can only be predicted after two depths
+        assertTrue(maxNTree.timeTakenInNanoSeconds(1) > 0);
+        assertEquals(0, maxNTree.timeTakenInNanoSeconds(2));
+    }
 }
@@ -0,0 +1,73 @@
+package competitive.programming.gametheory.mcts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import competitive.programming.gametheory.StickGame;
+import competitive.programming.gametheory.StickGenerator;
+import competitive.programming.gametheory.StickMove;
+import competitive.programming.gametheory.Tester;
+import competitive.programming.timemanagement.Timer;
+
+public class MonteCarloTreeSearchTest {
+
+    private static MonteCarloTreeSearch<StickMove, StickGame> createSearch() {
+        final MonteCarloTreeSearch<StickMove, StickGame> search = new MonteCarloTreeSearch<>(new Timer(), 100, 20, (rawScores, player) -> rawScores[player]);
+        search.setRandom(new Random(42));
+        search.setIterationsMax(5000);
+        return search;
+    }
+
+    @Test
+    public void testStickGame() {
+        final MonteCarloTreeSearch<StickMove, StickGame> search = createSearch();
+
+        Tester.testAlgo((game, generator, maxdepth) -> search.best(game, generator), true);
+    }
+
+    @Test
+    public void testEndedGame() {
+        final MonteCarloTreeSearch<StickMove, StickGame> search = createSearch();
+
+        assertNull(search.bestEval());
+        assertNull(search.best(new StickGame(0, 0, true), new StickGenerator()));
+        assertEquals(0, search.iterations());
+        assertNull(search.bestEval());
+        assertNull(search.bestGame());
+    }
+
+    @Test
+    public void testPrunKeepsTheSubTree() {
+        final MonteCarloTreeSearch<StickMove, StickGame> search = createSearch();
+        final StickGenerator generator = new StickGenerator();
+
+        final StickMove move = search.best(new StickGame(0, 11, true), generator);
+        assertEquals(2, move.getSticks());
+        final int visits = search.getRoot().visits();
+        search.prun(move);
+        final int keptVisits = search.getRoot().visits();
+        assertTrue(keptVisits > 0 && keptVisits < visits);
+
+        // Whatever the opponent plays, we can take back the advantage
+        final StickMove opponentMove = search.continueBest(generator);
+        search.prun(opponentMove);
+        final StickMove nextMove = search.continueBest(generator);
+        assertEquals(4 - opponentMove.getSticks(), nextMove.getSticks());
+    }
+
+    @Test
+    public void testPrunWithAnEqualMove() {
+        final MonteCarloTreeSearch<StickMove, StickGame> search = createSearch();
+        final StickGenerator generator = new StickGenerator();
+
+        final StickMove move = search.best(new StickGame(0, 11, true), generator);
+        // The move received from the referee is not the instance of the tree
+        search.prun(new StickMove(move.getSticks()));
+        assertTrue(search.getRoot().visits() > 0);
+    }
+}
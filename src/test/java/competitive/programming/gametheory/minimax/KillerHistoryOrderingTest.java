@@ -0,0 +1,91 @@
+package competitive.programming.gametheory.minimax;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import competitive.programming.gametheory.MoveBuffer;
+
+public class KillerHistoryOrderingTest {
+
+    private static List<Integer> moves(Integer... moves) {
+        return new ArrayList<>(Arrays.asList(moves));
+    }
+
+    @Test
+    public void keepsGeneratorOrderWithoutInformation() {
+        final KillerHistoryOrdering<Integer> ordering = new KillerHistoryOrdering<>(move -> move, 10, true);
+        final List<Integer> moves = moves(3, 1, 2);
+        ordering.order(moves, 0, 0, null);
+        assertEquals(moves(3, 1, 2), moves);
+    }
+
+    @Test
+    public void killersFirstThenHistory() {
+        final KillerHistoryOrdering<Integer> ordering = new KillerHistoryOrdering<>(move -> move, 10, false);
+        ordering.cutoff(5, 2, 1, null);
+        ordering.cutoff(4, 2, 1, null);
+        ordering.cutoff(1, 0, 3, null);
+
+        final List<Integer> moves = moves(0, 1, 5, 4, 6);
+        ordering.order(moves, 0, 2, null);
+        assertEquals(moves(4, 5, 1, 0, 6), moves);
+
+        // Killers are only used at their ply
+        final List<Integer> otherPly = moves(0, 4, 1, 5);
+        ordering.order(otherPly, 0, 1, null);
+        assertEquals(moves(1, 4, 5, 0), otherPly);
+    }
+
+    @Test
+    public void movesBeforeFromAreNotReordered() {
+        final KillerHistoryOrdering<Integer> ordering = new KillerHistoryOrdering<>(move -> move, 10, false);
+        ordering.cutoff(2, 0, 1, null);
+
+        final List<Integer> moves = moves(0, 1, 2);
+        ordering.order(moves, 1, 0, null);
+        assertEquals(moves(0, 2, 1), moves);
+    }
+
+    @Test
+    public void movesOfABufferAreIndexedByTheirCode() {
+        final List<String> indexed = new ArrayList<>();
+        final KillerHistoryOrdering<String> ordering = new KillerHistoryOrdering<>(move -> {
+            indexed.add(move);
+            return 2;
+        }, 10, false);
+        ordering.setCodesAsIndexes(true);
+        ordering.cutoff("c", 0, 1, null);
+
+        final MoveBuffer<String> moves = new MoveBuffer<>();
+        moves.add("a", 3);
+        moves.add("b", 1);
+        moves.add("c", 2);
+        ordering.order(moves, 0, 0, null);
+        assertEquals(Arrays.asList("c", "a", "b"), moves);
+        assertEquals(2, moves.code(0));
+        assertEquals(3, moves.code(1));
+        // Only the cutoff needed the indexer
+        assertEquals(Arrays.asList("c"), indexed);
+    }
+
+    @Test
+    public void counterMoveAnswersThePreviousMove() {
+        final KillerHistoryOrdering<Integer> ordering = new KillerHistoryOrdering<>(move -> move, 10, true);
+        ordering.cutoff(7, 3, 1, 9);
+        ordering.startSearch();
+
+        final List<Integer> afterNine = moves(1, 2, 7);
+        ordering.order(afterNine, 0, 1, 9);
+        assertEquals(moves(7, 1, 2), afterNine);
+
+        // The history of the previous search has been aged
+        final List<Integer> afterEight = moves(1, 2, 7);
+        ordering.order(afterEight, 0, 1, 8);
+        assertEquals(moves(1, 2, 7), afterEight);
+    }
+}
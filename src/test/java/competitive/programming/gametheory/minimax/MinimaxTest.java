@@ -1,8 +1,11 @@
 package competitive.programming.gametheory.minimax;
 
+import java.util.ArrayList;
+
 import org.junit.Test;
 
 import competitive.programming.gametheory.StickGame;
+import competitive.programming.gametheory.StickGenerator;
 import competitive.programming.gametheory.StickMove;
 import competitive.programming.gametheory.Tester;
 import competitive.programming.timemanagement.Timer;
@@ -16,4 +19,92 @@ public class MinimaxTest {
         Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
         Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
     }
+
+    @Test
+    public void testStickGameWithTranspositionTable() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10);
+
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameWithPrincipalVariationSearch() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 0, true);
+        final Minimax<StickMove, StickGame> minimaxWithTable = new Minimax<StickMove, StickGame>(timer, 1 << 10, true);
+
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+        Tester.testAlgo((game, generator, maxdepth) -> minimaxWithTable.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimaxWithTable.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameOnSeveralThreads() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10, true, 4);
+
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+
+        // The helper threads are started again by the next search
+        minimax.shutdown();
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+        minimax.shutdown();
+    }
+
+    @Test
+    public void testStickGameWithMoveOrdering() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10, true);
+        minimax.setMoveOrdering(() -> {
+            final KillerHistoryOrdering<StickMove> ordering = new KillerHistoryOrdering<>(move -> move.getSticks() - 1, 3, true);
+            ordering.setCodesAsIndexes(true);
+            return ordering;
+        });
+
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameWithAspirationWindow() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10, true);
+        minimax.setAspirationWindow(0.5);
+
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), false);
+        Tester.testAlgo((game, generator, maxdepth) -> minimax.best(game, generator, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameWithQuiescence() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10, true);
+        final StickGenerator generator = new StickGenerator();
+        // Near the end of the game, every move decides who wins
+        minimax.setQuiescence(game -> game.getSticksRemaining() < 5 ? generator.generateMoves(game) : new ArrayList<>(), 4);
+
+        Tester.testAlgo((game, gen, maxdepth) -> minimax.best(game, gen, 0, maxdepth), false);
+        Tester.testAlgo((game, gen, maxdepth) -> minimax.best(game, gen, 0, maxdepth), true);
+    }
+
+    @Test
+    public void testStickGameWithSelectiveSearch() {
+        final Timer timer = new Timer();
+        final Minimax<StickMove, StickGame> minimax = new Minimax<StickMove, StickGame>(timer, 1 << 10, true);
+        // Taking no stick passes the turn
+        minimax.setNullMovePruning(game -> new StickMove(0), 2);
+        minimax.setLateMoveReductions(1, 1);
+
+        Tester.testAlgo((game, gen, maxdepth) -> minimax.best(game, gen, 0, maxdepth), false);
+        Tester.testAlgo((game, gen, maxdepth) -> minimax.best(game, gen, 0, maxdepth), true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLateMoveReductionsOfAllMoves() {
+        new Minimax<StickMove, StickGame>(new Timer()).setLateMoveReductions(0, 1);
+    }
 }
@@ -1,18 +1,26 @@
 package competitive.programming.gametheory.treesearch;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 
 import competitive.programming.gametheory.IGame;
+import competitive.programming.gametheory.IHashableGame;
 import competitive.programming.gametheory.IMove;
 import competitive.programming.gametheory.IMoveGenerator;
 import competitive.programming.gametheory.StickGame;
+import competitive.programming.gametheory.StickGenerator;
 import competitive.programming.gametheory.StickMove;
 import competitive.programming.gametheory.Tester;
 import competitive.programming.gametheory.treesearch.TreeSearch.TreeSearchNode;
@@ -127,4 +135,420 @@ public class TreeSearchTest {
     	//System.err.println("");
     	assertEquals(42, treeSearch.bestEval()[0], 0.001);
     }
+
+    @Test
+    public void testNodesMax(){
+    	NegValueMove.reset();
+    	TreeSearch<NegValueMove, NegValueGame> treeSearch = new TreeSearch<>(new Timer(), 0.9, (s,p)->s[p]);
+    	treeSearch.setNodesMax(100);
+
+    	IMoveGenerator<NegValueMove, NegValueGame> generator = game -> {
+    		List<NegValueMove> moves = new ArrayList<>();
+    		if (game.depth<5){
+    			for (int i = 0; i < 4; i++) {
+    				moves.add(new NegValueMove());
+    			}
+    		}
+    		return moves;
+    	};
+    	// Without time or evaluations limit, the search ends: the subtrees it evicted are not expanded again
+    	treeSearch.best(new NegValueGame(1,0), generator);
+    	assertTrue(treeSearch.evaluations() < 1364);
+    	assertTrue(treeSearch.nodes() <= 100 + 4);
+    	// The next search expands them again
+    	treeSearch.continueBest(generator);
+    	assertTrue(treeSearch.evaluations() > 0);
+    	assertTrue(treeSearch.nodes() <= 100 + 4);
+    }
+
+    static class RandomGame implements IGame {
+        private final long seed;
+        private final int player;
+        private final int depth;
+
+        RandomGame(long seed, int player, int depth) {
+            this.seed = seed;
+            this.player = player;
+            this.depth = depth;
+        }
+
+        @Override
+        public int currentPlayer() {
+            return player;
+        }
+
+        @Override
+        public double[] evaluate(int depth) {
+            final Random random = new Random(seed);
+            return new double[] { random.nextInt(10), random.nextInt(10) };
+        }
+    }
+
+    static class RandomMove implements IMove<RandomGame> {
+        private final int index;
+
+        RandomMove(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public RandomGame execute(RandomGame game) {
+            return new RandomGame(game.seed * 31 + index + 1, 1 - game.player, game.depth + 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RandomMove && ((RandomMove) obj).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    private static IMoveGenerator<RandomMove, RandomGame> randomGenerator(int width, int depthMax) {
+        return game -> {
+            final List<RandomMove> moves = new ArrayList<>();
+            // Some game states are final before the maximum depth
+            if (game.depth < depthMax && (game.depth == 0 || game.seed % 5 != 0)) {
+                for (int i = 0; i < width; i++) {
+                    moves.add(new RandomMove(i));
+                }
+            }
+            return moves;
+        };
+    }
+
+    @Test
+    public void testNodesMaxAcrossTurns() {
+        // Evicting can leave only final states under the root: the search must stop instead of polling an empty frontier
+        for (int seed = 0; seed < 200; seed++) {
+            final Random random = new Random(seed);
+            final int width = 1 + seed % 3;
+            final IMoveGenerator<RandomMove, RandomGame> generator = randomGenerator(width, 6);
+            final TreeSearch<RandomMove, RandomGame> treeSearch = new TreeSearch<>(new Timer(), 0.9, (s, p) -> s[p], 4);
+            treeSearch.setNodesMax(1 + random.nextInt(30));
+            treeSearch.setEvaluationsMax(500);
+            RandomMove best = treeSearch.best(new RandomGame(seed, 0, 0), generator);
+            for (int turn = 0; turn < 4 && best != null; turn++) {
+                treeSearch.prun(new RandomMove(random.nextInt(width)), generator);
+                best = treeSearch.continueBest(generator);
+            }
+        }
+    }
+
+    @Test
+    public void testCompactionLeavingOnlyFinalStates() {
+        // root: a (final) and b, b: b0, b0: b00. The storage of 4 nodes is full when the search stops before expanding b0
+        final IMoveGenerator<RandomMove, RandomGame> generator = game -> {
+            final List<RandomMove> moves = new ArrayList<>();
+            if (game.depth == 0) {
+                moves.add(new RandomMove(0));
+                moves.add(new RandomMove(1));
+            } else if (game.seed % 31 == 2 || game.depth == 2) {
+                moves.add(new RandomMove(0));
+            }
+            return moves;
+        };
+        final TreeSearch<RandomMove, RandomGame> treeSearch = new TreeSearch<>(new Timer(), 0.9, (s, p) -> s[p], 4);
+        treeSearch.setEvaluationsMax(3);
+        treeSearch.best(new RandomGame(0, 0, 0), generator);
+        assertEquals(4, treeSearch.nodes());
+        treeSearch.prun(new RandomMove(0), generator);
+        // Reclaiming the pruned nodes leaves nothing to expand under a
+        assertEquals(null, treeSearch.continueBest(generator));
+        assertEquals(1, treeSearch.nodes());
+    }
+
+    @Test
+    public void testStickGameWithThreads() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        treeSearch.setThreads(4);
+
+        Tester.testAlgo((game, generator, maxdepth) -> treeSearch.best(game, generator), true);
+
+        // The helper threads are started again by the next search
+        treeSearch.shutdown();
+        Tester.testAlgo((game, generator, maxdepth) -> treeSearch.best(game, generator), true);
+        treeSearch.shutdown();
+    }
+
+    @Test
+    public void testStickGameWithNodesMax() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        treeSearch.setEvaluationsMax(1000);
+        treeSearch.setNodesMax(40);
+
+        Tester.testAlgo((game, generator, maxdepth) -> treeSearch.best(game, generator), true);
+    }
+
+    @Test
+    public void testStickGameWithBatchEvaluator() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        final List<Integer> batchSizes = new ArrayList<>();
+        treeSearch.setBatchEvaluator((games, depth, evaluations) -> {
+            for (int i = 0; i < games.size(); i++) {
+                System.arraycopy(games.get(i).evaluate(depth), 0, evaluations[i], 0, 2);
+            }
+            batchSizes.add(games.size());
+        });
+
+        Tester.testAlgo((game, generator, maxdepth) -> treeSearch.best(game, generator), true);
+        // The 3 moves of a node are evaluated together
+        assertTrue(batchSizes.contains(3));
+    }
+
+    @Test
+    public void testStickGameWithTranspositions() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        treeSearch.setTranspositions(true);
+
+        Tester.testAlgo((game, generator, maxdepth) -> treeSearch.best(game, generator), true);
+    }
+
+    /**
+     * Moving right then up or up then right leads to the same position: the game tree has 2^depth leaves but only depth+1 different positions per depth
+     */
+    static class GridGame implements IHashableGame {
+        private final int x;
+        private final int y;
+
+        GridGame(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public int currentPlayer() {
+            return 0;
+        }
+
+        @Override
+        public double[] evaluate(int depth) {
+            return new double[] { (x * 7 + y * 13) % 10 };
+        }
+
+        @Override
+        public long hash() {
+            return x * 1000L + y;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GridGame && ((GridGame) obj).x == x && ((GridGame) obj).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) hash();
+        }
+    }
+
+    static class GridMove implements IMove<GridGame> {
+        private final boolean right;
+
+        GridMove(boolean right) {
+            this.right = right;
+        }
+
+        @Override
+        public GridGame execute(GridGame game) {
+            return right ? new GridGame(game.x + 1, game.y) : new GridGame(game.x, game.y + 1);
+        }
+    }
+
+    @Test
+    public void testTranspositions() {
+        final IMoveGenerator<GridMove, GridGame> generator = game -> {
+            final List<GridMove> moves = new ArrayList<>();
+            if (game.x + game.y < 10) {
+                moves.add(new GridMove(true));
+                moves.add(new GridMove(false));
+            }
+            return moves;
+        };
+        final TreeSearch<GridMove, GridGame> tree = new TreeSearch<>(new Timer(), 0.9, (s, p) -> s[p]);
+        final TreeSearch<GridMove, GridGame> graph = new TreeSearch<>(new Timer(), 0.9, (s, p) -> s[p]);
+        graph.setTranspositions(true);
+
+        tree.best(new GridGame(0, 0), generator);
+        graph.best(new GridGame(0, 0), generator);
+
+        assertEquals(tree.bestEval()[0], graph.bestEval()[0], 0.001);
+        assertEquals(2046, tree.evaluations());
+        // One evaluation per position of the grid
+        assertEquals(65, graph.evaluations());
+        assertEquals(66, graph.nodes());
+    }
+
+    /**
+     * Single player game whose tree is scripted: a game state is the path of moves from the root, and its sub nodes are the longer paths of the values
+     */
+    static class ScriptedGame implements IGame {
+        private final Map<String, Double> values;
+        private final String path;
+
+        ScriptedGame(Map<String, Double> values, String path) {
+            this.values = values;
+            this.path = path;
+        }
+
+        List<ScriptedMove> moves() {
+            final List<ScriptedMove> moves = new ArrayList<>();
+            for (final String subPath : values.keySet()) {
+                if (subPath.length() == path.length() + 1 && subPath.startsWith(path)) {
+                    moves.add(new ScriptedMove(subPath.charAt(path.length())));
+                }
+            }
+            return moves;
+        }
+
+        @Override
+        public int currentPlayer() {
+            return 0;
+        }
+
+        @Override
+        public double[] evaluate(int depth) {
+            return new double[] { values.get(path) };
+        }
+    }
+
+    static class ScriptedMove implements IMove<ScriptedGame> {
+        private final char name;
+
+        ScriptedMove(char name) {
+            this.name = name;
+        }
+
+        @Override
+        public ScriptedGame execute(ScriptedGame game) {
+            return new ScriptedGame(game.values, game.path + name);
+        }
+    }
+
+    @Test
+    public void testIncrementalBackPropagation() {
+        // The scenario is below x, as the root sub nodes are compared again when returning the best move.
+        // With a depth penalty factor of 1, the nodes are expanded by decreasing value: root, x, a, b, xba, c, xca, xab, then the leaves
+        final Map<String, Double> values = new LinkedHashMap<>();
+        values.put("", 0.0);
+        values.put("x", 0.0);
+        values.put("y", -1.0);
+        values.put("xa", 10.0);
+        values.put("xb", 6.0);
+        values.put("xc", 3.0);
+        // The best sub node xa gets worse than its brothers
+        values.put("xaa", 1.0);
+        values.put("xab", 2.0);
+        // xb gets worse but stays the best, then gets worse than xc
+        values.put("xba", 5.0);
+        values.put("xbaa", 0.0);
+        values.put("xca", 2.5);
+        // xa gets better but stays worse than xc, so x and the root keep their value
+        values.put("xaba", 2.2);
+        final TreeSearch<ScriptedMove, ScriptedGame> treeSearch = new TreeSearch<>(new Timer(), 1, (s, p) -> s[p]);
+
+        final double[] expectedEvals = { 6, 5, 3, 2.5, 2.5 };
+        for (int i = 0; i < expectedEvals.length; i++) {
+            // The root, x and xa evaluate 7 sub nodes, then each expansion evaluates one
+            treeSearch.setEvaluationsMax(7 + i);
+            final ScriptedMove move = treeSearch.best(new ScriptedGame(values, ""), ScriptedGame::moves);
+            assertEquals('x', move.name);
+            assertEquals(expectedEvals[i], treeSearch.bestEval()[0], 0.001);
+
+            // Same result as a full recomputation of the explored tree, whose leaves are the nodes of the frontier and the ended games
+            final Set<String> frontier = new HashSet<>();
+            for (final TreeSearchNode<ScriptedMove, ScriptedGame> node : treeSearch.getToBeExpanded()) {
+                frontier.add(node.getGame().path);
+            }
+            assertEquals(recompute(new ScriptedGame(values, "x"), frontier), treeSearch.bestEval()[0], 0.001);
+        }
+    }
+
+    private static double recompute(ScriptedGame game, Set<String> frontier) {
+        final List<ScriptedMove> moves = game.moves();
+        if (moves.isEmpty() || frontier.contains(game.path)) {
+            return game.evaluate(0)[0];
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (final ScriptedMove move : moves) {
+            best = Math.max(best, recompute(move.execute(game), frontier));
+        }
+        return best;
+    }
+
+    @Test
+    public void testEndedGame() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+
+        assertNull(treeSearch.bestEval());
+        assertNull(treeSearch.best(new StickGame(0, 0, true), new StickGenerator()));
+        assertNull(treeSearch.bestEval());
+        assertNull(treeSearch.bestGame());
+    }
+
+    @Test
+    public void testPondering() throws InterruptedException {
+        final StickGenerator generator = new StickGenerator();
+
+        // Without pondering
+        final TreeSearch<StickMove, StickGame> plain = createPartialStickSearch(generator);
+        plain.prun(new StickMove(2), generator);
+        plain.setEvaluationsMax(0);
+        final StickMove plainMove = plain.continueBest(generator);
+
+        // With pondering during the opponent turn
+        final TreeSearch<StickMove, StickGame> treeSearch = createPartialStickSearch(generator);
+        final int nodesBefore = treeSearch.nodes();
+        treeSearch.setEvaluationsMax(100);
+        treeSearch.startPondering(generator);
+        // The pondering stops by itself once its evaluations are spent
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ((treeSearch.nodes() == nodesBefore || treeSearch.evaluations() <= 100) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        treeSearch.stopPondering();
+        assertTrue(treeSearch.nodes() > nodesBefore);
+
+        // The opponent took 2 sticks: the nodes pondered below this move are kept
+        treeSearch.prun(new StickMove(2), generator);
+        treeSearch.setEvaluationsMax(0);
+        final StickMove move = treeSearch.continueBest(generator);
+        assertEquals(plainMove.getSticks(), move.getSticks());
+        assertTrue(treeSearch.evaluations() < plain.evaluations());
+    }
+
+    /**
+     * Partly expand the tree of a stick game with 12 sticks and play the best move found
+     */
+    private static TreeSearch<StickMove, StickGame> createPartialStickSearch(StickGenerator generator) {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        treeSearch.setEvaluationsMax(20);
+        final StickMove move = treeSearch.best(new StickGame(0, 12, true), generator);
+        treeSearch.prun(move, generator);
+        return treeSearch;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSearchWhilePondering() {
+        final TreeSearch<StickMove, StickGame> treeSearch = new TreeSearch<StickMove, StickGame>(new Timer(), 0.5, (rawScores, player) -> rawScores[player]);
+        final StickGenerator generator = new StickGenerator();
+
+        treeSearch.best(new StickGame(0, 10, true), generator);
+        treeSearch.startPondering(generator);
+        try {
+            treeSearch.continueBest(generator);
+        } finally {
+            treeSearch.stopPondering();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTranspositionsOfNotHashableGame() {
+        final TreeSearch<NegValueMove, NegValueGame> treeSearch = new TreeSearch<>(new Timer(), 0.9, (s, p) -> s[p]);
+        treeSearch.setTranspositions(true);
+        treeSearch.best(new NegValueGame(1, 0), game -> new ArrayList<>());
+    }
 }
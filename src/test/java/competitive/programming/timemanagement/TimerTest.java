@@ -1,5 +1,7 @@
 package competitive.programming.timemanagement;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -41,6 +43,17 @@ public class TimerTest {
         timer.timeCheck();
     }
 
+    @Test
+    public void remainingTime() {
+        Timer timer = new Timer();
+        assertEquals(Long.MAX_VALUE, timer.remainingTimeInNanoSeconds());
+        timer.startTimer(5);
+        final long remaining = timer.remainingTimeInNanoSeconds();
+        assertTrue(remaining > 0 && remaining <= 5 * 1000 * 1000);
+        sleep(6);
+        assertTrue(timer.remainingTimeInNanoSeconds() < 0);
+    }
+
     private void sleep(long milliseconds) {
         // I had some difficulties to sleep precisely a number of milliseconds.
         // Thread.sleep was not fine...